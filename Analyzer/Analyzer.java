@@ -2,6 +2,8 @@ package plc.compiler;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Objects;
@@ -14,9 +16,20 @@ import java.util.Optional;
 public final class Analyzer implements Ast.Visitor<Ast> {
 
     public Scope scope;
+    private final Stdlib.Registry stdlib;
 
     public Analyzer(Scope scope) {
+        this(scope, Stdlib.snapshot());
+    }
+
+    /**
+     * Creates an analyzer that resolves types and functions in the given
+     * registry, such as a {@link Stdlib#snapshot()} extended with functions
+     * only available to this compilation.
+     */
+    public Analyzer(Scope scope, Stdlib.Registry stdlib) {
         this.scope = scope;
+        this.stdlib = stdlib;
     }
 
     @Override
@@ -39,35 +52,40 @@ public final class Analyzer implements Ast.Visitor<Ast> {
 
     @Override
     public Ast.Statement.Expression visit(Ast.Statement.Expression ast) throws AnalysisException {
-        if (!(visit(ast.getExpression()) instanceof Ast.Expression.Function))
+        Ast.Expression expression = visit(ast.getExpression());
+        if (!(expression instanceof Ast.Expression.Function))
             throw new AnalysisException("Not a valid Expression Statement");
-        return new Ast.Statement.Expression(visit(ast.getExpression()));
+        return new Ast.Statement.Expression(expression);
     }
 
     @Override
     public Ast.Statement.Declaration visit(Ast.Statement.Declaration ast) throws AnalysisException {
         String name = ast.getName();
-        String type = ast.getType();
-        scope.define(name, Stdlib.getType(type));
-        if (Stdlib.getType(type) == Stdlib.Type.VOID)
+        Stdlib.Type type = stdlib.getType(ast.getType());
+        Scope.Binding binding = scope.define(name, type);
+        if (type == Stdlib.Type.VOID)
                 throw new AnalysisException("Type of Declaration is VOID");
         else if (ast.getValue().isPresent())
         {
-            checkAssignable(visit(ast.getValue().get()).getType(), Stdlib.getType(type));
-            return new Ast.Statement.Declaration(name, Stdlib.getType(type).getJvmName(), Optional.ofNullable(visit(ast.getValue().get())));
+            Ast.Expression value = visit(ast.getValue().get());
+            checkAssignable(value.getType(), type);
+            return new Ast.Statement.Declaration(name, type.getJvmName(), Optional.of(value), binding.getDepth(), binding.getSlot());
         }
-        return new Ast.Statement.Declaration(name, Stdlib.getType(type).getJvmName(), ast.getValue());
+        return new Ast.Statement.Declaration(name, type.getJvmName(), ast.getValue(), binding.getDepth(), binding.getSlot());
     }
 
     @Override
     public Ast.Statement.Assignment visit(Ast.Statement.Assignment ast) throws AnalysisException {
-        checkAssignable(visit(ast.getExpression()).getType() , scope.lookup(ast.getName()));
-        return new Ast.Statement.Assignment(ast.getName(), visit(ast.getExpression()));
+        Ast.Expression expression = visit(ast.getExpression());
+        Scope.Binding binding = scope.resolve(ast.getName());
+        checkAssignable(expression.getType() , binding.getType());
+        return new Ast.Statement.Assignment(ast.getName(), expression, binding.getDepth(), binding.getSlot());
     }
 
     @Override
     public Ast.Statement.If visit(Ast.Statement.If ast) throws AnalysisException {
-        if (visit(ast.getCondition()).getType() != Stdlib.Type.BOOLEAN)
+        Ast.Expression condition = visit(ast.getCondition());
+        if (condition.getType() != Stdlib.Type.BOOLEAN)
             throw new AnalysisException("Condition is not a boolean for if");
         else if (ast.getThenStatements().size() == 0)
             throw new AnalysisException("THEN statement list is empty");
@@ -85,12 +103,13 @@ public final class Analyzer implements Ast.Visitor<Ast> {
             elseList.add(visit(elseS));
         }
         scope = scope.getParent();
-        return new Ast.Statement.If(visit(ast.getCondition()),thenList, elseList);
+        return new Ast.Statement.If(condition, thenList, elseList);
     }
 
     @Override
     public Ast.Statement.While visit(Ast.Statement.While ast) throws AnalysisException {
-        if (visit(ast.getCondition()).getType() != Stdlib.Type.BOOLEAN)
+        Ast.Expression condition = visit(ast.getCondition());
+        if (condition.getType() != Stdlib.Type.BOOLEAN)
             throw new AnalysisException("Condition is not a boolean for While");
         List<Ast.Statement> list = new ArrayList<>();
         scope = new Scope(scope);
@@ -99,14 +118,63 @@ public final class Analyzer implements Ast.Visitor<Ast> {
             list.add(visit(asts));
         }
         scope = scope.getParent();
-        return new Ast.Statement.While(visit(ast.getCondition()),list);
+        return new Ast.Statement.While(condition, list);
     }
 
     /**
-     * Statically validates that visiting an expression returns an expression.
+     * Analyzes an expression with an {@link ExpressionWalker} rather than by
+     * visiting its operands recursively, so that deeply nested expressions do
+     * not overflow the stack. The checks are made in the same order as when
+     * visiting each expression, so an invalid expression throws the same
+     * exception.
      */
     private Ast.Expression visit(Ast.Expression ast) throws AnalysisException {
-        return (Ast.Expression) visit((Ast) ast);
+        return new Expressions().walk(ast);
+    }
+
+    private final class Expressions extends ExpressionWalker<Ast.Expression> {
+
+        /**
+         * The functions of the calls whose arguments are being analyzed.
+         */
+        private final Deque<Stdlib.Function> functions = new ArrayDeque<>();
+
+        @Override
+        void enter(Ast.Expression ast) {
+            if (ast instanceof Ast.Expression.Function) {
+                Ast.Expression.Function call = (Ast.Expression.Function) ast;
+                int size = call.getArguments().size();
+                Stdlib.Function function = stdlib.getFunction(call.getName(), size);
+                if (function.getParameterTypes().size() != size)
+                    throw new AnalysisException("Incorrect number of parameters for function");
+                functions.push(function);
+            }
+        }
+
+        @Override
+        void operand(Ast.Expression ast, int index, Ast.Expression result) {
+            if (ast instanceof Ast.Expression.Function)
+                checkAssignable(result.getType(), functions.peek().getParameterTypes().get(index));
+            else if (ast instanceof Ast.Expression.Concat && result.getType() == Stdlib.Type.VOID)
+                throw new AnalysisException("Not a valid concatenation");
+        }
+
+        @Override
+        Ast.Expression exit(Ast.Expression ast, List<Ast.Expression> operands) {
+            if (ast instanceof Ast.Expression.Literal)
+                return visit((Ast.Expression.Literal) ast);
+            else if (ast instanceof Ast.Expression.Variable)
+                return visit((Ast.Expression.Variable) ast);
+            else if (ast instanceof Ast.Expression.Group)
+                return new Ast.Expression.Group(operands.get(0).getType(), operands.get(0));
+            else if (ast instanceof Ast.Expression.Binary)
+                return binary(((Ast.Expression.Binary) ast).getOperator(), operands.get(0), operands.get(1));
+            else if (ast instanceof Ast.Expression.Concat)
+                return concat(operands);
+            Stdlib.Function function = functions.pop();
+            return new Ast.Expression.Function(function.getReturnType(), function.getJvmName(), operands, function);
+        }
+
     }
 
     @Override
@@ -143,15 +211,19 @@ public final class Analyzer implements Ast.Visitor<Ast> {
 
     @Override
     public Ast.Expression.Group visit(Ast.Expression.Group ast) throws AnalysisException {
-        Ast.Expression expression = visit(ast.getExpression()); //visit first, then getType
-        return new Ast.Expression.Group(expression.getType(), expression);
+        return (Ast.Expression.Group) visit((Ast.Expression) ast);
     }
 
     @Override
     public Ast.Expression.Binary visit(Ast.Expression.Binary ast) throws AnalysisException {
-        String operator = ast.getOperator();
-        Ast.Expression left = visit(ast.getLeft());
-        Ast.Expression right = visit(ast.getRight());
+        return (Ast.Expression.Binary) visit((Ast.Expression) ast);
+    }
+
+    /**
+     * Returns the binary expression of the analyzed operands, typed by the
+     * operator and the types of the operands.
+     */
+    private static Ast.Expression.Binary binary(String operator, Ast.Expression left, Ast.Expression right) throws AnalysisException {
         if (operator.compareTo("==") == 0 || operator.compareTo("!=") == 0)
         {
             if (right.getType() != Stdlib.Type.VOID && left.getType() != Stdlib.Type.VOID)
@@ -193,23 +265,30 @@ public final class Analyzer implements Ast.Visitor<Ast> {
         throw new AnalysisException("Not a valid binary");
     }
 
+    @Override
+    public Ast.Expression.Concat visit(Ast.Expression.Concat ast) throws AnalysisException {
+        return (Ast.Expression.Concat) visit((Ast.Expression) ast);
+    }
+
+    /**
+     * Returns the concatenation of the analyzed operands, none of which are
+     * VOID.
+     */
+    private static Ast.Expression.Concat concat(List<Ast.Expression> operands) throws AnalysisException {
+        if (operands.stream().limit(2).noneMatch(operand -> operand.getType() == Stdlib.Type.STRING))
+            throw new AnalysisException("Concatenation does not start with a string");
+        return new Ast.Expression.Concat(Stdlib.Type.STRING, operands);
+    }
+
     @Override
     public Ast.Expression.Variable visit(Ast.Expression.Variable ast) throws AnalysisException {
-        return new Ast.Expression.Variable(scope.lookup(ast.getName()), ast.getName());
+        Scope.Binding binding = scope.resolve(ast.getName());
+        return new Ast.Expression.Variable(binding.getType(), ast.getName(), binding.getDepth(), binding.getSlot());
     }
 
     @Override
     public Ast.Expression.Function visit(Ast.Expression.Function ast) throws AnalysisException {
-        List<Ast.Expression> list = new ArrayList<>();
-        int size = ast.getArguments().size();
-        if (Stdlib.getFunction(ast.getName(), size).getParameterTypes().size() != size)
-            throw new AnalysisException("Incorrect number of parameters for function");
-        for (int i = 0; i < size; i++)
-        {
-            checkAssignable(visit(ast.getArguments().get(i)).getType(), Stdlib.getFunction(ast.getName(), ast.getArguments().size()).getParameterTypes().get(i));
-            list.add(visit(ast.getArguments().get(i)));
-        }
-        return new Ast.Expression.Function(Stdlib.getFunction(ast.getName(), size).getReturnType(), Stdlib.getFunction(ast.getName(), size).getJvmName(), list);
+        return (Ast.Expression.Function) visit((Ast.Expression) ast);
     }
 
     public static void checkAssignable(Stdlib.Type type, Stdlib.Type target) throws AnalysisException {
@@ -1,16 +1,20 @@
 package plc.compiler;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 /**
@@ -21,6 +25,8 @@ import java.util.stream.Stream;
  */
 public final class AnalyzerTests {
 
+    private static final Stdlib.Function ABS = new Stdlib.Function("ABS", "Math.abs", Arrays.asList(Stdlib.Type.INTEGER), Stdlib.Type.INTEGER);
+
     @ParameterizedTest(name = "{0}")
     @MethodSource
     public void testDeclarationStatement(String test, Ast.Statement.Declaration ast, Ast.Statement.Declaration expected) {
@@ -175,6 +181,37 @@ public final class AnalyzerTests {
         );
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testConcatExpression(String test, Ast.Expression.Concat ast, Ast.Expression.Concat expected) {
+        test(ast, expected, Collections.emptyMap());
+    }
+
+    public static Stream<Arguments> testConcatExpression() {
+        return Stream.of(
+                Arguments.of("String Second",
+                        new Ast.Expression.Concat(Arrays.asList(
+                                new Ast.Expression.Literal(BigInteger.ONE),
+                                new Ast.Expression.Literal("a"),
+                                new Ast.Expression.Literal(Boolean.TRUE)
+                        )),
+                        new Ast.Expression.Concat(Stdlib.Type.STRING, Arrays.asList(
+                                new Ast.Expression.Literal(Stdlib.Type.INTEGER, 1),
+                                new Ast.Expression.Literal(Stdlib.Type.STRING, "a"),
+                                new Ast.Expression.Literal(Stdlib.Type.BOOLEAN, true)
+                        ))
+                ),
+                Arguments.of("No Leading String",
+                        new Ast.Expression.Concat(Arrays.asList(
+                                new Ast.Expression.Literal(BigInteger.ONE),
+                                new Ast.Expression.Literal(BigInteger.ONE),
+                                new Ast.Expression.Literal("a")
+                        )),
+                        null
+                )
+        );
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource
     public void testCheckAssignable(String test, Stdlib.Type type, Stdlib.Type target, boolean success) {
@@ -196,6 +233,167 @@ public final class AnalyzerTests {
         );
     }
 
+    /**
+     * Each argument must be analyzed exactly once; visiting it twice makes
+     * nested calls take time exponential in their depth.
+     */
+    @Test
+    public void testNestedFunctionDepth() {
+        Ast.Expression ast = new Ast.Expression.Literal(BigInteger.ONE);
+        Ast.Expression expected = new Ast.Expression.Literal(Stdlib.Type.INTEGER, 1);
+        for (int i = 0; i < 64; i++) {
+            ast = new Ast.Expression.Function("ABS", Arrays.asList(ast));
+            expected = new Ast.Expression.Function(Stdlib.Type.INTEGER, "Math.abs", Arrays.asList(expected));
+        }
+        Ast.Statement.Expression statement = new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(ast)));
+        Ast.Statement.Expression result = new Ast.Statement.Expression(new Ast.Expression.Function(Stdlib.Type.VOID, "System.out.println", Arrays.asList(expected)));
+        Analyzer analyzer = new Analyzer(new Scope(null), Stdlib.snapshot().withFunction(ABS));
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> Assertions.assertEquals(result, analyzer.visit(statement)));
+    }
+
+    @Test
+    public void testRegistryOverlay() {
+        Ast.Expression.Function ast = new Ast.Expression.Function("ABS", Arrays.asList(new Ast.Expression.Literal(BigInteger.ONE)));
+        Analyzer analyzer = new Analyzer(new Scope(null), Stdlib.snapshot().withFunction(ABS));
+        Assertions.assertEquals(Stdlib.Type.INTEGER, analyzer.visit(ast).getType());
+        Assertions.assertThrows(AnalysisException.class, () -> Stdlib.getFunction("ABS", 1));
+        Assertions.assertThrows(AnalysisException.class, () -> new Analyzer(new Scope(null)).visit(ast));
+    }
+
+    @Test
+    public void testSlots() {
+        /* LET x: INTEGER = 1;
+         * IF TRUE THEN LET y: INTEGER = x; ELSE LET x: INTEGER = 2; END
+         * x = 3;
+         */
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.Declaration("x", "INTEGER", Optional.of(new Ast.Expression.Literal(BigInteger.ONE))),
+                new Ast.Statement.If(new Ast.Expression.Literal(Boolean.TRUE),
+                        Arrays.asList(new Ast.Statement.Declaration("y", "INTEGER", Optional.of(new Ast.Expression.Variable("x")))),
+                        Arrays.asList(new Ast.Statement.Declaration("x", "INTEGER", Optional.of(new Ast.Expression.Literal(BigInteger.TEN))))
+                ),
+                new Ast.Statement.Assignment("x", new Ast.Expression.Literal(BigInteger.valueOf(3)))
+        ));
+        Ast.Source result = (Ast.Source) new Analyzer(new Scope(null)).visit(ast);
+        Ast.Statement.Declaration x = (Ast.Statement.Declaration) result.getStatements().get(0);
+        Ast.Statement.If branch = (Ast.Statement.If) result.getStatements().get(1);
+        Ast.Statement.Declaration y = (Ast.Statement.Declaration) branch.getThenStatements().get(0);
+        Ast.Expression.Variable variable = (Ast.Expression.Variable) y.getValue().get();
+        Ast.Statement.Declaration shadow = (Ast.Statement.Declaration) branch.getElseStatements().get(0);
+        Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) result.getStatements().get(2);
+        Assertions.assertEquals(Arrays.asList(0, 0), Arrays.asList(x.getDepth(), x.getSlot()));
+        Assertions.assertEquals(Arrays.asList(1, 1), Arrays.asList(y.getDepth(), y.getSlot()));
+        Assertions.assertEquals(Arrays.asList(0, 0), Arrays.asList(variable.getDepth(), variable.getSlot()));
+        Assertions.assertEquals(Arrays.asList(1, 1), Arrays.asList(shadow.getDepth(), shadow.getSlot()));
+        Assertions.assertEquals(Arrays.asList(0, 0), Arrays.asList(assignment.getDepth(), assignment.getSlot()));
+    }
+
+    @Test
+    public void testIncrementalAnalyzer() {
+        Ast.Statement x = new Ast.Statement.Declaration("x", "INTEGER", Optional.of(new Ast.Expression.Literal(BigInteger.ONE)));
+        Ast.Statement printX = new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(new Ast.Expression.Variable("x"))));
+        Ast.Statement y = new Ast.Statement.Declaration("y", "DECIMAL", Optional.of(new Ast.Expression.Variable("x")));
+        Ast.Statement printY = new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(new Ast.Expression.Variable("y"))));
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer();
+        Ast.Source first = testIncremental(analyzer, Arrays.asList(x, printX, y, printY), 4);
+        Ast.Source second = testIncremental(analyzer, Arrays.asList(x, printX, y, printY), 0);
+        Assertions.assertSame(first.getStatements().get(2), second.getStatements().get(2));
+        Ast.Statement decimal = new Ast.Statement.Declaration("x", "DECIMAL", Optional.of(new Ast.Expression.Literal(BigDecimal.ONE)));
+        Ast.Source third = testIncremental(analyzer, Arrays.asList(decimal, printX, y, printY), 3);
+        Assertions.assertSame(first.getStatements().get(3), third.getStatements().get(3));
+        Ast.Statement printZ = new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(new Ast.Expression.Variable("z"))));
+        Assertions.assertThrows(AnalysisException.class, () -> analyzer.analyze(new Ast.Source(Arrays.asList(decimal, printX, printZ))));
+        Ast.Statement z = new Ast.Statement.Declaration("z", "STRING", Optional.empty());
+        testIncremental(analyzer, Arrays.asList(decimal, printX, z, printZ), 2);
+        Assertions.assertThrows(AnalysisException.class, () -> analyzer.analyze(new Ast.Source(Arrays.asList(x, printX, y, x))));
+    }
+
+    /**
+     * Analyzes the statements incrementally, checking that the result is the
+     * same as analyzing them in full and that the expected number of
+     * statements were analyzed again.
+     */
+    private static Ast.Source testIncremental(IncrementalAnalyzer analyzer, List<Ast.Statement> statements, int analyzed) {
+        Ast.Source result = analyzer.analyze(new Ast.Source(statements));
+        Assertions.assertEquals(new Analyzer(new Scope(null)).visit(new Ast.Source(statements)), result);
+        Assertions.assertEquals(analyzed, analyzer.getAnalyzed());
+        return result;
+    }
+
+    @Test
+    public void testParallelAnalyzer() {
+        /* LET x: INTEGER = 1;
+         * IF TRUE THEN LET y: INTEGER = x; ELSE LET x: INTEGER = 2; END
+         * LET y: DECIMAL = x;
+         * WHILE x != 3 DO x = 3; LET z: DECIMAL = y; END
+         */
+        Ast.Statement x = new Ast.Statement.Declaration("x", "INTEGER", Optional.of(new Ast.Expression.Literal(BigInteger.ONE)));
+        Ast.Statement branch = new Ast.Statement.If(new Ast.Expression.Literal(Boolean.TRUE),
+                Arrays.asList(new Ast.Statement.Declaration("y", "INTEGER", Optional.of(new Ast.Expression.Variable("x")))),
+                Arrays.asList(new Ast.Statement.Declaration("x", "INTEGER", Optional.of(new Ast.Expression.Literal(BigInteger.TEN))))
+        );
+        Ast.Statement y = new Ast.Statement.Declaration("y", "DECIMAL", Optional.of(new Ast.Expression.Variable("x")));
+        Ast.Statement loop = new Ast.Statement.While(
+                new Ast.Expression.Binary("!=", new Ast.Expression.Variable("x"), new Ast.Expression.Literal(BigInteger.valueOf(3))),
+                Arrays.asList(
+                        new Ast.Statement.Assignment("x", new Ast.Expression.Literal(BigInteger.valueOf(3))),
+                        new Ast.Statement.Declaration("z", "DECIMAL", Optional.of(new Ast.Expression.Variable("y")))
+                )
+        );
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelAnalyzer analyzer = new ParallelAnalyzer(pool, Stdlib.snapshot());
+            for (List<Ast.Statement> statements : Arrays.asList(
+                    Arrays.asList(x, branch, y, loop),
+                    Arrays.asList(x, branch, loop, y),
+                    Arrays.asList(branch, x),
+                    Arrays.asList(x, y, x, loop),
+                    Arrays.asList(x, loop, y, y))) {
+                Ast.Source source = new Ast.Source(statements);
+                Ast expected;
+                try {
+                    expected = new Analyzer(new Scope(null)).visit(source);
+                } catch (AnalysisException e) {
+                    AnalysisException actual = Assertions.assertThrows(AnalysisException.class, () -> analyzer.analyze(source));
+                    Assertions.assertEquals(e.getMessage(), actual.getMessage());
+                    continue;
+                }
+                Assertions.assertEquals(expected, analyzer.analyze(source));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Analyzes an expression nested far deeper than a recursive visitor could
+     * on a default stack, checking the tree with a loop since the recursive
+     * {@code equals} of the AST would overflow.
+     */
+    @Test
+    public void testDeepExpression() {
+        int depth = 100000;
+        Ast.Expression ast = new Ast.Expression.Variable("x");
+        for (int i = 0; i < depth; i++) {
+            ast = new Ast.Expression.Function("ABS", Arrays.asList(
+                    new Ast.Expression.Binary("+", new Ast.Expression.Literal(BigInteger.ONE), new Ast.Expression.Group(ast))));
+        }
+        Ast.Expression deep = ast;
+        Analyzer analyzer = new Analyzer(new Scope(null), Stdlib.snapshot().withFunction(ABS));
+        Assertions.assertThrows(AnalysisException.class, () -> analyzer.visit(deep));
+        analyzer.scope.define("x", Stdlib.Type.INTEGER);
+        Ast.Expression expression = (Ast.Expression) analyzer.visit(deep);
+        for (int i = 0; i < depth; i++) {
+            Ast.Expression.Function function = (Ast.Expression.Function) expression;
+            Assertions.assertEquals(Optional.of(ABS), function.getFunction());
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) function.getArguments().get(0);
+            Assertions.assertEquals(Stdlib.Type.INTEGER, binary.getType());
+            Assertions.assertEquals(Stdlib.Type.INTEGER, binary.getRight().getType());
+            expression = ((Ast.Expression.Group) binary.getRight()).getExpression();
+        }
+        Assertions.assertEquals(new Ast.Expression.Variable(Stdlib.Type.INTEGER, "x", 0, 0), expression);
+    }
+
     private static <T extends Ast> Analyzer test(T ast, T expected, Map<String, Stdlib.Type> map) {
         Analyzer analyzer = new Analyzer(new Scope(null));
         map.forEach(analyzer.scope::define);
@@ -69,11 +69,19 @@ public class Ast {
             private final String name;
             private final String type;
             private final Optional<Ast.Expression> value;
+            private final int depth;
+            private final int slot;
 
             public Declaration(String name, String type, Optional<Ast.Expression> value) {
+                this(name, type, value, -1, -1);
+            }
+
+            public Declaration(String name, String type, Optional<Ast.Expression> value, int depth, int slot) {
                 this.name = name;
                 this.type = type;
                 this.value = value;
+                this.depth = depth;
+                this.slot = slot;
             }
 
             public String getName() {
@@ -88,6 +96,22 @@ public class Ast {
                 return value;
             }
 
+            /**
+             * Returns the scope depth of the variable, or -1 if it has not
+             * been resolved. See {@link Scope.Binding}.
+             */
+            public int getDepth() {
+                return depth;
+            }
+
+            /**
+             * Returns the slot of the variable, or -1 if it has not been
+             * resolved. See {@link Scope.Binding}.
+             */
+            public int getSlot() {
+                return slot;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Declaration &&
@@ -111,10 +135,18 @@ public class Ast {
 
             private final String name;
             private final Ast.Expression expression;
+            private final int depth;
+            private final int slot;
 
             public Assignment(String name, Ast.Expression expression) {
+                this(name, expression, -1, -1);
+            }
+
+            public Assignment(String name, Ast.Expression expression, int depth, int slot) {
                 this.name = name;
                 this.expression = expression;
+                this.depth = depth;
+                this.slot = slot;
             }
 
             public String getName() {
@@ -125,6 +157,22 @@ public class Ast {
                 return expression;
             }
 
+            /**
+             * Returns the scope depth of the variable, or -1 if it has not
+             * been resolved. See {@link Scope.Binding}.
+             */
+            public int getDepth() {
+                return depth;
+            }
+
+            /**
+             * Returns the slot of the variable, or -1 if it has not been
+             * resolved. See {@link Scope.Binding}.
+             */
+            public int getSlot() {
+                return slot;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Assignment &&
@@ -355,23 +403,89 @@ public class Ast {
 
         }
 
+        /**
+         * The concatenation of the string values of its operands, in order.
+         * It is not produced by the parser but by the {@link Optimizer}, which
+         * replaces chains of STRING {@code +} expressions so that the result
+         * can be built at once. As in the chain, one of the first two operands
+         * is a STRING, so the operands joined by {@code +} are a concatenation
+         * in Java as well.
+         */
+        public static final class Concat extends Expression {
+
+            private final List<Expression> operands;
+
+            public Concat(List<Expression> operands) {
+                this(null, operands);
+            }
+
+            public Concat(Stdlib.Type type, List<Expression> operands) {
+                super(type);
+                this.operands = operands;
+            }
+
+            public List<Expression> getOperands() {
+                return operands;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof Concat &&
+                        operands.equals(((Concat) obj).operands) &&
+                        Objects.equals(type, ((Concat) obj).type);
+            }
+
+            @Override
+            public String toString() {
+                return "Concat{" +
+                        "operands=" + operands +
+                        ", type=" + type +
+                        '}';
+            }
+
+        }
+
         public static final class Variable extends Expression {
 
             private final String name;
+            private final int depth;
+            private final int slot;
 
             public Variable(String name) {
                 this(null, name);
             }
 
             public Variable(Stdlib.Type type, String name) {
+                this(type, name, -1, -1);
+            }
+
+            public Variable(Stdlib.Type type, String name, int depth, int slot) {
                 super(type);
                 this.name = name;
+                this.depth = depth;
+                this.slot = slot;
             }
 
             public String getName() {
                 return name;
             }
 
+            /**
+             * Returns the scope depth of the variable, or -1 if it has not
+             * been resolved. See {@link Scope.Binding}.
+             */
+            public int getDepth() {
+                return depth;
+            }
+
+            /**
+             * Returns the slot of the variable, or -1 if it has not been
+             * resolved. See {@link Scope.Binding}.
+             */
+            public int getSlot() {
+                return slot;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Variable &&
@@ -393,15 +507,21 @@ public class Ast {
 
             private final String name;
             private final List<Expression> arguments;
+            private final Optional<Stdlib.Function> function;
 
             public Function(String name, List<Expression> arguments) {
                 this(null, name, arguments);
             }
 
             public Function(Stdlib.Type type, String name, List<Expression> arguments) {
+                this(type, name, arguments, null);
+            }
+
+            public Function(Stdlib.Type type, String name, List<Expression> arguments, Stdlib.Function function) {
                 super(type);
                 this.name = name;
                 this.arguments = arguments;
+                this.function = Optional.ofNullable(function);
             }
 
             public String getName() {
@@ -412,6 +532,14 @@ public class Ast {
                 return arguments;
             }
 
+            /**
+             * Returns the Stdlib function the call was resolved to, which is
+             * present once it has been analyzed.
+             */
+            public Optional<Stdlib.Function> getFunction() {
+                return function;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Function &&
@@ -454,6 +582,8 @@ public class Ast {
                 return visit((Expression.Group) ast);
             } else if (ast instanceof Expression.Binary) {
                 return visit((Expression.Binary) ast);
+            } else if (ast instanceof Expression.Concat) {
+                return visit((Expression.Concat) ast);
             } else if (ast instanceof Expression.Variable) {
                 return visit((Expression.Variable) ast);
             } else if (ast instanceof Expression.Function) {
@@ -481,6 +611,8 @@ public class Ast {
 
         T visit(Expression.Binary ast);
 
+        T visit(Expression.Concat ast);
+
         T visit(Expression.Variable ast);
 
         T visit(Expression.Function ast);
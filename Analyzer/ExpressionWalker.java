@@ -0,0 +1,93 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Visits the expressions of a tree in post-order with an explicit stack
+ * instead of recursion, so the nesting of an expression is only limited by
+ * the heap rather than by the depth of the call stack.
+ *
+ * Every expression is first {@link #enter entered}, then its operands are
+ * walked in order, each result being passed to {@link #operand}, and it is
+ * finally {@link #exit exited} with the results of all of its operands. This
+ * is the same order in which a recursive visitor would see them.
+ */
+abstract class ExpressionWalker<T> {
+
+    /**
+     * Called before the operands of the expression are walked.
+     */
+    void enter(Ast.Expression ast) {}
+
+    /**
+     * Called with the result of the operand at the index of the expression,
+     * before the next operand is walked.
+     */
+    void operand(Ast.Expression ast, int index, T result) {}
+
+    /**
+     * Returns the result of the expression, given the results of its
+     * operands.
+     */
+    abstract T exit(Ast.Expression ast, List<T> operands);
+
+    final T walk(Ast.Expression ast) {
+        Deque<Frame<T>> frames = new ArrayDeque<>();
+        Frame<T> frame = new Frame<>(ast);
+        enter(ast);
+        while (true) {
+            if (frame.results.size() < frame.operands.size()) {
+                Ast.Expression operand = frame.operands.get(frame.results.size());
+                frames.push(frame);
+                frame = new Frame<>(operand);
+                enter(operand);
+                continue;
+            }
+            T result = exit(frame.ast, frame.results);
+            if (frames.isEmpty()) {
+                return result;
+            }
+            frame = frames.pop();
+            operand(frame.ast, frame.results.size(), result);
+            frame.results.add(result);
+        }
+    }
+
+    /**
+     * Returns the operands of an expression in the order they are evaluated,
+     * such as the arguments of a function call, or none for a literal or a
+     * variable.
+     */
+    static List<Ast.Expression> getOperands(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Group) {
+            return Collections.singletonList(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            return Arrays.asList(((Ast.Expression.Binary) ast).getLeft(), ((Ast.Expression.Binary) ast).getRight());
+        } else if (ast instanceof Ast.Expression.Concat) {
+            return ((Ast.Expression.Concat) ast).getOperands();
+        } else if (ast instanceof Ast.Expression.Function) {
+            return ((Ast.Expression.Function) ast).getArguments();
+        }
+        return Collections.emptyList();
+    }
+
+    private static final class Frame<T> {
+
+        private final Ast.Expression ast;
+        private final List<Ast.Expression> operands;
+        private final List<T> results;
+
+        private Frame(Ast.Expression ast) {
+            this.ast = ast;
+            this.operands = getOperands(ast);
+            this.results = new ArrayList<>(operands.size());
+        }
+
+    }
+
+}
@@ -0,0 +1,243 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Analyzes successive versions of a source, such as the file open in an
+ * editor, only analyzing again the top-level statements which changed or
+ * whose dependencies changed.
+ *
+ * The analyzed statement is cached for each top-level statement, which is
+ * recognized by identity as a {@code Document} reuses the statements an edit
+ * did not change. A top-level statement only depends on the top-level
+ * bindings of the names it mentions, which are recorded with the statement,
+ * and the number of top-level bindings before it, which decides the slots of
+ * the variables it declares. If all of them are the same, the cached
+ * statement is used and only its declaration, if any, is defined again.
+ *
+ * An incremental analyzer is not thread safe.
+ */
+public final class IncrementalAnalyzer {
+
+    private final Stdlib.Registry stdlib;
+    private Map<Ast.Statement, Entry> entries = new IdentityHashMap<>();
+    private int analyzed = 0;
+
+    public IncrementalAnalyzer() {
+        this(Stdlib.snapshot());
+    }
+
+    public IncrementalAnalyzer(Stdlib.Registry stdlib) {
+        this.stdlib = stdlib;
+    }
+
+    /**
+     * Analyzes the source as {@link Analyzer#visit(Ast.Source)} does, reusing
+     * the statements analyzed for earlier sources where possible.
+     */
+    public Ast.Source analyze(Ast.Source source) throws AnalysisException {
+        if (source.getStatements().size() == 0)
+            throw new AnalysisException("Empty source");
+        Scope scope = new Scope(null);
+        Analyzer analyzer = new Analyzer(scope, stdlib);
+        Map<Ast.Statement, Entry> next = new IdentityHashMap<>();
+        List<Ast.Statement> statements = new ArrayList<>();
+        int size = 0;
+        analyzed = 0;
+        for (Ast.Statement statement : source.getStatements()) {
+            Entry entry = entries.get(statement);
+            if (entry == null || !entry.isValid(scope, size)) {
+                entry = new Entry(statement, scope, size);
+                analyzer.scope = scope;
+                entry.result = (Ast.Statement) analyzer.visit(statement);
+                //kept even if a later statement fails, so the statements
+                //before an error are not analyzed again
+                entries.put(statement, entry);
+                analyzed++;
+            } else if (entry.result instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statement;
+                scope.define(declaration.getName(), stdlib.getType(declaration.getType()));
+            }
+            if (entry.result instanceof Ast.Statement.Declaration) {
+                size++;
+            }
+            next.put(statement, entry);
+            statements.add(entry.result);
+        }
+        entries = next;
+        return new Ast.Source(statements);
+    }
+
+    /**
+     * Returns the number of top-level statements analyzed by the last call
+     * to {@link #analyze(Ast.Source)}, rather than reused.
+     */
+    int getAnalyzed() {
+        return analyzed;
+    }
+
+    private static final class Entry {
+
+        private final int size;
+        private final String[] names;
+        private final Scope.Binding[] bindings;
+        private Ast.Statement result;
+
+        private Entry(Ast.Statement statement, Scope scope, int size) {
+            this.size = size;
+            Set<String> names = new LinkedHashSet<>();
+            new Names(names).visit(statement);
+            this.names = names.toArray(new String[0]);
+            this.bindings = new Scope.Binding[this.names.length];
+            for (int i = 0; i < this.names.length; i++) {
+                bindings[i] = scope.find(this.names[i]).orElse(null);
+            }
+        }
+
+        /**
+         * Returns {@code true} if every name is bound to a variable of the
+         * same type and slot as when the statement was analyzed, or still not
+         * bound, and the statement starts with the same number of bindings.
+         */
+        private boolean isValid(Scope scope, int size) {
+            if (size != this.size) {
+                return false;
+            }
+            for (int i = 0; i < names.length; i++) {
+                Optional<Scope.Binding> binding = scope.find(names[i]);
+                if (bindings[i] == null) {
+                    if (binding.isPresent()) {
+                        return false;
+                    }
+                } else if (!binding.isPresent() || binding.get().getType() != bindings[i].getType()
+                        || binding.get().getSlot() != bindings[i].getSlot()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Collects every name a statement declares, assigns or reads, including
+     * the names of variables declared in its blocks. These do not depend on
+     * the bindings outside the statement, but including them keeps this a
+     * single pass that does not need to track scopes.
+     */
+    private static final class Names implements Ast.Visitor<Void> {
+
+        private final Set<String> names;
+
+        private Names(Set<String> names) {
+            this.names = names;
+        }
+
+        private void visit(List<? extends Ast> asts) {
+            for (Ast ast : asts) {
+                visit(ast);
+            }
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            visit(ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Expression ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Declaration ast) {
+            names.add(ast.getName());
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Assignment ast) {
+            names.add(ast.getName());
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.If ast) {
+            visit(ast.getCondition());
+            visit(ast.getThenStatements());
+            visit(ast.getElseStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.While ast) {
+            visit(ast.getCondition());
+            visit(ast.getStatements());
+            return null;
+        }
+
+        /**
+         * Collects the variables an expression reads, walking it the same way
+         * the {@link Analyzer} does.
+         */
+        private Void expression(Ast.Expression ast) {
+            new ExpressionWalker<Void>() {
+                @Override
+                void enter(Ast.Expression expression) {
+                    if (expression instanceof Ast.Expression.Variable) {
+                        names.add(((Ast.Expression.Variable) expression).getName());
+                    }
+                }
+
+                @Override
+                Void exit(Ast.Expression expression, List<Void> operands) {
+                    return null;
+                }
+            }.walk(ast);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Literal ast) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Group ast) {
+            return expression(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Binary ast) {
+            return expression(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Concat ast) {
+            return expression(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Variable ast) {
+            names.add(ast.getName());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Function ast) {
+            return expression(ast);
+        }
+
+    }
+
+}
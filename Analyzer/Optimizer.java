@@ -0,0 +1,337 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Simplifies an analyzed AST before it is generated or run. Binary expressions
+ * whose operands are literals are folded with the semantics of the generated
+ * Java code (int arithmetic wraps around, and an int is promoted to a double
+ * if the other operand is a double), identities such as {@code x * 1} and
+ * {@code x + 0} are removed, and groups are removed wherever the generated
+ * code means the same without the parentheses.
+ *
+ * Expressions that would fail or produce a value without a literal, such as
+ * an integer division by zero or an infinite decimal, are left as they are.
+ *
+ * Within a list of statements, the branch of an IF that is never taken is
+ * removed along with the IF itself, as are WHILE loops whose condition is
+ * FALSE and IF statements with no statements left and a condition without
+ * effects. Other empty loops are kept, since they either never run or never
+ * terminate, which has to be preserved.
+ */
+public final class Optimizer implements Ast.Visitor<Ast> {
+
+    @Override
+    public Ast.Source visit(Ast.Source ast) {
+        return new Ast.Source(visit(ast.getStatements()));
+    }
+
+    private List<Ast.Statement> visit(List<Ast.Statement> statements) {
+        List<Ast.Statement> optimized = new ArrayList<>(statements.size());
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.If) {
+                Ast.Statement.If ast = visit((Ast.Statement.If) statement);
+                if (ast.getCondition() instanceof Ast.Expression.Literal) {
+                    boolean condition = (Boolean) ((Ast.Expression.Literal) ast.getCondition()).getValue();
+                    splice(condition ? ast.getThenStatements() : ast.getElseStatements(), optimized);
+                } else if (!ast.getThenStatements().isEmpty() || !ast.getElseStatements().isEmpty() || !isPure(ast.getCondition())) {
+                    optimized.add(ast);
+                }
+            } else if (statement instanceof Ast.Statement.While) {
+                Ast.Statement.While ast = visit((Ast.Statement.While) statement);
+                if (!ast.getCondition().equals(new Ast.Expression.Literal(Stdlib.Type.BOOLEAN, false))) {
+                    optimized.add(ast);
+                }
+            } else {
+                optimized.add((Ast.Statement) visit(statement));
+            }
+        }
+        return optimized;
+    }
+
+    /**
+     * Adds the statements of a branch that is always taken to the enclosing
+     * list. If the branch declares variables it is kept as its own block, as
+     * an {@code if (true)}, since its declarations may be shadowing variables
+     * of the enclosing block or be declared again after it.
+     *
+     * The depth and slot of every variable are kept as they were analyzed;
+     * slots are still unique among the variables visible at the same time.
+     */
+    private static void splice(List<Ast.Statement> branch, List<Ast.Statement> statements) {
+        if (branch.stream().noneMatch(statement -> statement instanceof Ast.Statement.Declaration)) {
+            statements.addAll(branch);
+        } else {
+            statements.add(new Ast.Statement.If(new Ast.Expression.Literal(Stdlib.Type.BOOLEAN, true), branch, new ArrayList<>()));
+        }
+    }
+
+    @Override
+    public Ast.Statement.Expression visit(Ast.Statement.Expression ast) {
+        return new Ast.Statement.Expression(optimize(ast.getExpression()));
+    }
+
+    @Override
+    public Ast.Statement.Declaration visit(Ast.Statement.Declaration ast) {
+        return new Ast.Statement.Declaration(ast.getName(), ast.getType(), ast.getValue().map(this::optimize), ast.getDepth(), ast.getSlot());
+    }
+
+    @Override
+    public Ast.Statement.Assignment visit(Ast.Statement.Assignment ast) {
+        return new Ast.Statement.Assignment(ast.getName(), optimize(ast.getExpression()), ast.getDepth(), ast.getSlot());
+    }
+
+    @Override
+    public Ast.Statement.If visit(Ast.Statement.If ast) {
+        return new Ast.Statement.If(optimize(ast.getCondition()), visit(ast.getThenStatements()), visit(ast.getElseStatements()));
+    }
+
+    @Override
+    public Ast.Statement.While visit(Ast.Statement.While ast) {
+        return new Ast.Statement.While(optimize(ast.getCondition()), visit(ast.getStatements()));
+    }
+
+    /**
+     * Optimizes an expression that is not an operand of a binary expression,
+     * where it never needs to be grouped.
+     */
+    private Ast.Expression optimize(Ast.Expression ast) {
+        return ungroup(new Expressions().walk(ast));
+    }
+
+    /**
+     * Optimizes the operands of an expression before the expression itself,
+     * with an {@link ExpressionWalker} so that deeply nested expressions do
+     * not overflow the stack.
+     */
+    private static final class Expressions extends ExpressionWalker<Ast.Expression> {
+
+        @Override
+        Ast.Expression exit(Ast.Expression ast, List<Ast.Expression> operands) {
+            if (ast instanceof Ast.Expression.Group) {
+                return group((Ast.Expression.Group) ast, operands.get(0));
+            } else if (ast instanceof Ast.Expression.Binary) {
+                return binary((Ast.Expression.Binary) ast, operands.get(0), operands.get(1));
+            } else if (ast instanceof Ast.Expression.Concat) {
+                Ast.Expression result = operands.get(0);
+                for (int i = 1; i < operands.size(); i++) {
+                    result = concat(result, operands.get(i));
+                }
+                return result;
+            } else if (ast instanceof Ast.Expression.Function) {
+                Ast.Expression.Function function = (Ast.Expression.Function) ast;
+                operands.replaceAll(Optimizer::ungroup);
+                return new Ast.Expression.Function(function.getType(), function.getName(), operands, function.getFunction().orElse(null));
+            }
+            return ast;
+        }
+
+    }
+
+    @Override
+    public Ast.Expression.Literal visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Group ast) {
+        return new Expressions().walk(ast);
+    }
+
+    /**
+     * Keeps a group only around the operators whose precedence it may
+     * change, which {@link #binary} removes again where it is not needed.
+     */
+    private static Ast.Expression group(Ast.Expression.Group ast, Ast.Expression expression) {
+        if (expression instanceof Ast.Expression.Binary || expression instanceof Ast.Expression.Concat) {
+            return new Ast.Expression.Group(ast.getType(), expression);
+        }
+        return expression;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Binary ast) {
+        return new Expressions().walk(ast);
+    }
+
+    /**
+     * Optimizes a binary expression given its optimized operands.
+     */
+    private static Ast.Expression binary(Ast.Expression.Binary ast, Ast.Expression left, Ast.Expression right) {
+        String operator = ast.getOperator();
+        if (left instanceof Ast.Expression.Literal && right instanceof Ast.Expression.Literal) {
+            Optional<Object> value = fold(ast.getType(), operator,
+                    ((Ast.Expression.Literal) left).getValue(), ((Ast.Expression.Literal) right).getValue());
+            if (value.isPresent()) {
+                return new Ast.Expression.Literal(ast.getType(), value.get());
+            }
+        }
+        if (isIdentity(ast.getType(), operator, right, false) && left.getType() == ast.getType()) {
+            return left;
+        } else if (isIdentity(ast.getType(), operator, left, true) && right.getType() == ast.getType()) {
+            return right;
+        }
+        //An operand only needs its group if it binds less tightly than the
+        //operator, or as tightly on the right since operators associate left.
+        if (left instanceof Ast.Expression.Group && precedence(ungroup(left)) >= precedence(ast)) {
+            left = ungroup(left);
+        }
+        if (right instanceof Ast.Expression.Group && precedence(ungroup(right)) > precedence(ast)) {
+            right = ungroup(right);
+        }
+        if (ast.getType() == Stdlib.Type.STRING && operator.equals("+")) {
+            return concat(left, right);
+        }
+        return new Ast.Expression.Binary(ast.getType(), operator, left, right);
+    }
+
+    /**
+     * Flattens a STRING {@code +} into a {@link Ast.Expression.Concat}, adding
+     * the right operand to the operands of the left if it is a concatenation
+     * itself. Adjacent literals are joined, which is the same as adding them
+     * once the value on their left is a string.
+     */
+    private static Ast.Expression.Concat concat(Ast.Expression left, Ast.Expression right) {
+        List<Ast.Expression> operands = new ArrayList<>();
+        if (left instanceof Ast.Expression.Concat) {
+            operands.addAll(((Ast.Expression.Concat) left).getOperands());
+        } else {
+            operands.add(left);
+        }
+        Ast.Expression last = operands.get(operands.size() - 1);
+        if (operands.size() > 1 && last instanceof Ast.Expression.Literal && right instanceof Ast.Expression.Literal) {
+            String value = String.valueOf(((Ast.Expression.Literal) last).getValue()) + ((Ast.Expression.Literal) right).getValue();
+            operands.set(operands.size() - 1, new Ast.Expression.Literal(Stdlib.Type.STRING, value));
+        } else {
+            operands.add(right);
+        }
+        return new Ast.Expression.Concat(Stdlib.Type.STRING, operands);
+    }
+
+    @Override
+    public Ast.Expression.Concat visit(Ast.Expression.Concat ast) {
+        return (Ast.Expression.Concat) new Expressions().walk(ast);
+    }
+
+    @Override
+    public Ast.Expression.Variable visit(Ast.Expression.Variable ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression.Function visit(Ast.Expression.Function ast) {
+        return (Ast.Expression.Function) new Expressions().walk(ast);
+    }
+
+    /**
+     * Returns the value of a binary expression with the given type and
+     * literal operands, or empty if it cannot be folded.
+     */
+    private static Optional<Object> fold(Stdlib.Type type, String operator, Object left, Object right) {
+        if (type == Stdlib.Type.BOOLEAN) {
+            Optional<Boolean> equal = equal(left, right);
+            return equal.map(value -> operator.equals("==") == value);
+        } else if (type == Stdlib.Type.STRING) {
+            return Optional.of(String.valueOf(left) + right);
+        } else if (type == Stdlib.Type.INTEGER) {
+            int l = (Integer) left;
+            int r = (Integer) right;
+            switch (operator) {
+                case "+": return Optional.of(l + r);
+                case "-": return Optional.of(l - r);
+                case "*": return Optional.of(l * r);
+                case "/": return r == 0 ? Optional.empty() : Optional.of(l / r);
+            }
+        } else if (type == Stdlib.Type.DECIMAL) {
+            double l = ((Number) left).doubleValue();
+            double r = ((Number) right).doubleValue();
+            double value;
+            switch (operator) {
+                case "+": value = l + r; break;
+                case "-": value = l - r; break;
+                case "*": value = l * r; break;
+                case "/": value = l / r; break;
+                default: return Optional.empty();
+            }
+            return Double.isFinite(value) ? Optional.of(value) : Optional.empty();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Compares two literals as {@code ==} does in the generated code, or
+     * returns empty if they cannot be compared there.
+     */
+    private static Optional<Boolean> equal(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return Optional.of(((Number) left).doubleValue() == ((Number) right).doubleValue());
+        } else if (left instanceof String && right instanceof String || left instanceof Boolean && right instanceof Boolean) {
+            return Optional.of(left.equals(right));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns {@code true} if the operand is a literal that leaves the other
+     * operand unchanged. Adding a decimal zero is not an identity since
+     * {@code -0.0 + 0.0} is {@code 0.0}.
+     */
+    private static boolean isIdentity(Stdlib.Type type, String operator, Ast.Expression operand, boolean isLeft) {
+        if (!(operand instanceof Ast.Expression.Literal) || type != Stdlib.Type.INTEGER && type != Stdlib.Type.DECIMAL) {
+            return false;
+        }
+        Object value = ((Ast.Expression.Literal) operand).getValue();
+        double number = ((Number) value).doubleValue();
+        boolean zero = type == Stdlib.Type.INTEGER ? Objects.equals(value, 0) : Double.doubleToRawLongBits(number) == 0L;
+        switch (operator) {
+            case "+": return type == Stdlib.Type.INTEGER && zero;
+            case "-": return !isLeft && zero;
+            case "*": return number == 1.0;
+            case "/": return !isLeft && number == 1.0;
+            default: return false;
+        }
+    }
+
+    /**
+     * Returns {@code true} if evaluating the expression has no effect, which
+     * holds unless it calls a function.
+     */
+    private static boolean isPure(Ast.Expression ast) {
+        Deque<Ast.Expression> pending = new ArrayDeque<>();
+        pending.push(ast);
+        while (!pending.isEmpty()) {
+            Ast.Expression expression = pending.pop();
+            if (expression instanceof Ast.Expression.Function) {
+                return false;
+            }
+            ExpressionWalker.getOperands(expression).forEach(pending::push);
+        }
+        return true;
+    }
+
+    private static Ast.Expression ungroup(Ast.Expression ast) {
+        while (ast instanceof Ast.Expression.Group) {
+            ast = ((Ast.Expression.Group) ast).getExpression();
+        }
+        return ast;
+    }
+
+    private static int precedence(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Concat) {
+            return 2;
+        } else if (!(ast instanceof Ast.Expression.Binary)) {
+            return Integer.MAX_VALUE;
+        }
+        switch (((Ast.Expression.Binary) ast).getOperator()) {
+            case "==": case "!=": return 1;
+            case "+": case "-": return 2;
+            default: return 3;
+        }
+    }
+
+}
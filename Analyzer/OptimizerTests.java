@@ -0,0 +1,202 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Analyzes sources, and expressions with the variables {@code x} and {@code y} of type
+ * INTEGER and {@code d} of type DECIMAL defined and checks the result of
+ * optimizing them. An expression that is not part of a statement keeps its
+ * outermost group, since it could be the operand of another expression.
+ */
+public final class OptimizerTests {
+
+    private static final Ast.Expression.Variable X = new Ast.Expression.Variable(Stdlib.Type.INTEGER, "x");
+    private static final Ast.Expression.Variable Y = new Ast.Expression.Variable(Stdlib.Type.INTEGER, "y");
+    private static final Ast.Expression.Variable D = new Ast.Expression.Variable(Stdlib.Type.DECIMAL, "d");
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testExpression(String test, Ast.Expression ast, Ast.Expression expected) {
+        Scope scope = new Scope(null);
+        scope.define("x", Stdlib.Type.INTEGER);
+        scope.define("y", Stdlib.Type.INTEGER);
+        scope.define("d", Stdlib.Type.DECIMAL);
+        Ast analyzed = new Analyzer(scope).visit(ast);
+        Assertions.assertEquals(expected, new Optimizer().visit(analyzed));
+    }
+
+    public static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Fold Arithmetic",
+                        binary("+", integer(1), new Ast.Expression.Group(binary("*", integer(2), integer(3)))),
+                        new Ast.Expression.Literal(Stdlib.Type.INTEGER, 7)
+                ),
+                Arguments.of("Integer Overflow",
+                        binary("*", integer(65536), integer(65536)),
+                        new Ast.Expression.Literal(Stdlib.Type.INTEGER, 0)
+                ),
+                Arguments.of("Integer Division",
+                        binary("/", integer(7), integer(2)),
+                        new Ast.Expression.Literal(Stdlib.Type.INTEGER, 3)
+                ),
+                Arguments.of("Decimal Promotion",
+                        binary("/", integer(7), decimal("2.0")),
+                        new Ast.Expression.Literal(Stdlib.Type.DECIMAL, 3.5)
+                ),
+                Arguments.of("Concatenation",
+                        binary("+", binary("+", string("a"), integer(1)), decimal("1.5")),
+                        new Ast.Expression.Literal(Stdlib.Type.STRING, "a11.5")
+                ),
+                Arguments.of("Flatten Concatenation",
+                        binary("+", binary("+", binary("+", variable("x"), string("a")), string("b")), variable("d")),
+                        new Ast.Expression.Concat(Stdlib.Type.STRING, Arrays.asList(X, new Ast.Expression.Literal(Stdlib.Type.STRING, "ab"), D))
+                ),
+                Arguments.of("Concatenation Operand",
+                        binary("+", string("a"), new Ast.Expression.Group(binary("+", variable("x"), integer(1)))),
+                        new Ast.Expression.Concat(Stdlib.Type.STRING, Arrays.asList(new Ast.Expression.Literal(Stdlib.Type.STRING, "a"),
+                                new Ast.Expression.Group(Stdlib.Type.INTEGER, new Ast.Expression.Binary(Stdlib.Type.INTEGER, "+", X,
+                                        new Ast.Expression.Literal(Stdlib.Type.INTEGER, 1)))))
+                ),
+                Arguments.of("Equality",
+                        binary("==", integer(1), decimal("1.0")),
+                        new Ast.Expression.Literal(Stdlib.Type.BOOLEAN, true)
+                ),
+                Arguments.of("Division By Zero",
+                        binary("/", integer(1), integer(0)),
+                        new Ast.Expression.Binary(Stdlib.Type.INTEGER, "/",
+                                new Ast.Expression.Literal(Stdlib.Type.INTEGER, 1),
+                                new Ast.Expression.Literal(Stdlib.Type.INTEGER, 0))
+                ),
+                Arguments.of("Multiply By One",
+                        binary("*", integer(1), binary("+", variable("x"), integer(0))),
+                        X
+                ),
+                Arguments.of("Promoting Identity",
+                        binary("*", variable("x"), decimal("1.0")),
+                        new Ast.Expression.Binary(Stdlib.Type.DECIMAL, "*", X, new Ast.Expression.Literal(Stdlib.Type.DECIMAL, 1.0))
+                ),
+                Arguments.of("Decimal Plus Zero",
+                        binary("+", variable("d"), decimal("0.0")),
+                        new Ast.Expression.Binary(Stdlib.Type.DECIMAL, "+", D, new Ast.Expression.Literal(Stdlib.Type.DECIMAL, 0.0))
+                ),
+                Arguments.of("Redundant Group",
+                        new Ast.Expression.Group(binary("-", new Ast.Expression.Group(binary("-", variable("x"), variable("y"))),
+                                new Ast.Expression.Group(binary("*", variable("y"), new Ast.Expression.Group(integer(2)))))),
+                        new Ast.Expression.Group(Stdlib.Type.INTEGER, new Ast.Expression.Binary(Stdlib.Type.INTEGER, "-",
+                                new Ast.Expression.Binary(Stdlib.Type.INTEGER, "-", X, Y),
+                                new Ast.Expression.Binary(Stdlib.Type.INTEGER, "*", Y, new Ast.Expression.Literal(Stdlib.Type.INTEGER, 2))))
+                ),
+                Arguments.of("Necessary Group",
+                        binary("-", variable("x"), new Ast.Expression.Group(binary("-", variable("y"), integer(1)))),
+                        new Ast.Expression.Binary(Stdlib.Type.INTEGER, "-", X, new Ast.Expression.Group(Stdlib.Type.INTEGER,
+                                new Ast.Expression.Binary(Stdlib.Type.INTEGER, "-", Y, new Ast.Expression.Literal(Stdlib.Type.INTEGER, 1))))
+                )
+        );
+    }
+
+    /**
+     * Folds {@code 1 + (1 + (... + 1))} nested far deeper than a recursive
+     * visitor could on a default stack.
+     */
+    @Test
+    public void testDeepExpression() {
+        int depth = 100000;
+        Ast.Expression ast = new Ast.Expression.Literal(Stdlib.Type.INTEGER, 1);
+        for (int i = 0; i < depth; i++) {
+            ast = new Ast.Expression.Binary(Stdlib.Type.INTEGER, "+", new Ast.Expression.Literal(Stdlib.Type.INTEGER, 1),
+                    new Ast.Expression.Group(Stdlib.Type.INTEGER, ast));
+        }
+        Assertions.assertEquals(new Ast.Expression.Literal(Stdlib.Type.INTEGER, depth + 1), new Optimizer().visit(ast));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testSource(String test, Ast.Source ast, Ast.Source expected) {
+        Ast analyzed = new Analyzer(new Scope(null)).visit(ast);
+        Assertions.assertEquals(expected, new Optimizer().visit(analyzed));
+    }
+
+    public static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("If True",
+                        source(new Ast.Statement.If(literal(true), Arrays.asList(print("a")), Arrays.asList(print("b")))),
+                        new Ast.Source(Arrays.asList(printed("a")))
+                ),
+                Arguments.of("If False With Declaration",
+                        source(new Ast.Statement.If(binary("==", integer(1), integer(2)),
+                                Arrays.asList(print("a")),
+                                Arrays.asList(new Ast.Statement.Declaration("x", "STRING", Optional.of(string("b"))), print("c")))),
+                        new Ast.Source(Arrays.asList(new Ast.Statement.If(new Ast.Expression.Literal(Stdlib.Type.BOOLEAN, true),
+                                Arrays.asList(new Ast.Statement.Declaration("x", "String", Optional.of(new Ast.Expression.Literal(Stdlib.Type.STRING, "b"))), printed("c")),
+                                Arrays.asList())))
+                ),
+                Arguments.of("While False",
+                        source(new Ast.Statement.While(literal(false), Arrays.asList(print("a"))), print("b")),
+                        new Ast.Source(Arrays.asList(printed("b")))
+                ),
+                Arguments.of("Empty If",
+                        source(new Ast.Statement.Declaration("x", "INTEGER", Optional.empty()),
+                                new Ast.Statement.If(binary("==", variable("x"), integer(1)),
+                                        Arrays.asList(new Ast.Statement.If(literal(false), Arrays.asList(print("a")), Arrays.asList())),
+                                        Arrays.asList())),
+                        new Ast.Source(Arrays.asList(new Ast.Statement.Declaration("x", "int", Optional.empty())))
+                ),
+                Arguments.of("Empty Loop",
+                        source(new Ast.Statement.Declaration("x", "INTEGER", Optional.empty()),
+                                new Ast.Statement.While(binary("!=", variable("x"), integer(0)),
+                                        Arrays.asList(new Ast.Statement.If(literal(false), Arrays.asList(print("a")), Arrays.asList())))),
+                        new Ast.Source(Arrays.asList(new Ast.Statement.Declaration("x", "int", Optional.empty()),
+                                new Ast.Statement.While(new Ast.Expression.Binary(Stdlib.Type.BOOLEAN, "!=", X, new Ast.Expression.Literal(Stdlib.Type.INTEGER, 0)),
+                                        Arrays.asList())))
+                )
+        );
+    }
+
+    private static Ast.Source source(Ast.Statement... statements) {
+        return new Ast.Source(Arrays.asList(statements));
+    }
+
+    private static Ast.Statement print(String value) {
+        return new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(string(value))));
+    }
+
+    private static Ast.Statement printed(String value) {
+        return new Ast.Statement.Expression(new Ast.Expression.Function(Stdlib.Type.VOID, "System.out.println",
+                Arrays.asList(new Ast.Expression.Literal(Stdlib.Type.STRING, value))));
+    }
+
+    private static Ast.Expression literal(boolean value) {
+        return new Ast.Expression.Literal(value);
+    }
+
+    private static Ast.Expression binary(String operator, Ast.Expression left, Ast.Expression right) {
+        return new Ast.Expression.Binary(operator, left, right);
+    }
+
+    private static Ast.Expression variable(String name) {
+        return new Ast.Expression.Variable(name);
+    }
+
+    private static Ast.Expression integer(int value) {
+        return new Ast.Expression.Literal(BigInteger.valueOf(value));
+    }
+
+    private static Ast.Expression decimal(String value) {
+        return new Ast.Expression.Literal(new BigDecimal(value));
+    }
+
+    private static Ast.Expression string(String value) {
+        return new Ast.Expression.Literal(value);
+    }
+
+}
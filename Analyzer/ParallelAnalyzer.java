@@ -0,0 +1,76 @@
+package plc.compiler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Analyzes the top-level statements of a source concurrently on a
+ * {@link ForkJoinPool}, returning the same AST as {@link Analyzer} or
+ * throwing the same exception.
+ *
+ * A top-level statement only depends on the declarations before it, and the
+ * blocks of {@code IF} and {@code WHILE} statements get their own scopes, so
+ * once the top-level declarations are known every top-level statement can be
+ * analyzed on its own. The declarations are first defined in order in a root
+ * {@link Scope}, then each statement is analyzed with a
+ * {@link Scope#snapshot(int) snapshot} of the declarations before it, so the
+ * statements get the same slots as when analyzed in order.
+ */
+public final class ParallelAnalyzer {
+
+    private final ForkJoinPool pool;
+    private final Stdlib.Registry stdlib;
+
+    public ParallelAnalyzer() {
+        this(ForkJoinPool.commonPool(), Stdlib.snapshot());
+    }
+
+    public ParallelAnalyzer(ForkJoinPool pool, Stdlib.Registry stdlib) {
+        this.pool = pool;
+        this.stdlib = stdlib;
+    }
+
+    public Ast.Source analyze(Ast.Source source) throws AnalysisException {
+        List<Ast.Statement> statements = source.getStatements();
+        if (statements.size() == 0)
+            throw new AnalysisException("Empty source");
+        Scope scope = new Scope(null);
+        int[] sizes = new int[statements.size()];
+        int count = 0;
+        int size = 0;
+        while (count < statements.size()) {
+            Ast.Statement statement = statements.get(count);
+            sizes[count++] = size;
+            if (statement instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statement;
+                try {
+                    scope.define(declaration.getName(), stdlib.getType(declaration.getType()));
+                } catch (AnalysisException e) {
+                    //analyzing the declaration throws the same exception, and
+                    //the statements after it would not be analyzed in order
+                    break;
+                }
+                size++;
+            }
+        }
+        Ast.Statement[] results = new Ast.Statement[count];
+        RuntimeException[] exceptions = new RuntimeException[count];
+        pool.submit(() -> IntStream.range(0, results.length).parallel().forEach(i -> {
+            try {
+                Analyzer analyzer = new Analyzer(scope.snapshot(sizes[i]), stdlib);
+                results[i] = (Ast.Statement) analyzer.visit(statements.get(i));
+            } catch (RuntimeException e) {
+                exceptions[i] = e;
+            }
+        })).join();
+        for (RuntimeException exception : exceptions) {
+            if (exception != null) {
+                throw exception;
+            }
+        }
+        return new Ast.Source(Arrays.asList(results));
+    }
+
+}
@@ -1,37 +1,212 @@
 package plc.compiler;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
+/**
+ * A lexical scope. All scopes created from the same root share one flat stack
+ * of bindings plus a single map from each name to its innermost binding, so
+ * entering a block does not allocate a map and a lookup is one probe no matter
+ * how deeply the blocks are nested.
+ *
+ * Each binding is given a slot, its position in the stack, which is unique
+ * among the variables that are visible at the same time. Downstream phases can
+ * use the slot to index a flat array of variables instead of looking them up
+ * by name.
+ *
+ * Scopes must be used in a nested (last in, first out) order, which is how the
+ * analyzer uses them: once a scope is used again after a child scope was
+ * created, the child's bindings are discarded. To analyze parts of a source
+ * concurrently, each part uses a {@link #snapshot(int) snapshot} of the root
+ * scope instead, which has its own stack.
+ */
 public final class Scope {
 
     private final Scope parent;
-    private final Map<String, Stdlib.Type> variables = new HashMap<>();
+    private final Table table;
+    private final int depth;
+    private final int base;
+    private int size = 0;
 
     public Scope(Scope parent) {
         this.parent = parent;
+        if (parent == null) {
+            this.table = new Table();
+            this.depth = 0;
+            this.base = 0;
+        } else {
+            parent.close();
+            this.table = parent.table;
+            this.depth = parent.depth + 1;
+            this.base = parent.base + parent.size;
+        }
+    }
+
+    private Scope(Table table, int size) {
+        this.parent = null;
+        this.table = table;
+        this.depth = 0;
+        this.base = 0;
+        this.size = size;
+    }
+
+    /**
+     * Returns a new root scope which sees the first {@code size} bindings of
+     * this root scope, but defines its own bindings in a separate table.
+     * Snapshots share the bindings of this scope without copying them, so
+     * they can only be used while this scope is no longer changed, but any
+     * number of them can then be used concurrently.
+     */
+    public Scope snapshot(int size) {
+        if (parent != null || table.shared > 0 || size > this.size) {
+            throw new IllegalStateException("Only the bindings of a root scope can be shared.");
+        }
+        return new Scope(new Table(table.innermost, size), size);
     }
 
     public Scope getParent() {
         return parent;
     }
 
-    public void define(String name, Stdlib.Type type) throws AnalysisException {
-        if (variables.containsKey(name)) {
+    public int getDepth() {
+        return depth;
+    }
+
+    public Binding define(String name, Stdlib.Type type) throws AnalysisException {
+        close();
+        Binding binding = table.get(name);
+        if (binding != null && binding.depth == depth) {
             throw new AnalysisException("The identifier " + name + " is already defined in this scope.");
-        } else {
-            variables.put(name, type);
         }
+        binding = new Binding(name, type, depth, base + size, binding);
+        table.push(binding);
+        size++;
+        return binding;
     }
 
     public Stdlib.Type lookup(String name) throws AnalysisException {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        } else if (parent != null) {
-            return parent.lookup(name);
-        } else {
+        return resolve(name).getType();
+    }
+
+    /**
+     * Returns the innermost binding of the given name visible from this scope.
+     */
+    public Binding resolve(String name) throws AnalysisException {
+        close();
+        Binding binding = table.get(name);
+        if (binding == null) {
             throw new AnalysisException("The identifier " + name + " is not defined.");
         }
+        return binding;
+    }
+
+    /**
+     * Returns the innermost binding of the given name visible from this scope,
+     * if the name is defined.
+     */
+    public Optional<Binding> find(String name) {
+        close();
+        return Optional.ofNullable(table.get(name));
+    }
+
+    /**
+     * Discards the bindings of any child scopes that are no longer in use.
+     */
+    private void close() {
+        table.pop(base + size);
+    }
+
+    public static final class Binding {
+
+        private final String name;
+        private final Stdlib.Type type;
+        private final int depth;
+        private final int slot;
+        private final Binding shadowed;
+
+        private Binding(String name, Stdlib.Type type, int depth, int slot, Binding shadowed) {
+            this.name = name;
+            this.type = type;
+            this.depth = depth;
+            this.slot = slot;
+            this.shadowed = shadowed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Stdlib.Type getType() {
+            return type;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+    }
+
+    /**
+     * The bindings of all scopes created from the same root. The table of a
+     * snapshot also sees the shared bindings of another root whose slot is
+     * below {@code shared}, and only stores the bindings after them.
+     */
+    private static final class Table {
+
+        private final Map<String, Binding> innermost = new HashMap<>();
+        private final Map<String, Binding> outer;
+        private final int shared;
+        private Binding[] stack = new Binding[16];
+        private int size;
+
+        private Table() {
+            this(Collections.emptyMap(), 0);
+        }
+
+        private Table(Map<String, Binding> outer, int shared) {
+            this.outer = outer;
+            this.shared = shared;
+            this.size = shared;
+        }
+
+        private Binding get(String name) {
+            Binding binding = innermost.get(name);
+            if (binding == null && shared > 0) {
+                binding = outer.get(name);
+                while (binding != null && binding.slot >= shared) {
+                    binding = binding.shadowed;
+                }
+            }
+            return binding;
+        }
+
+        private void push(Binding binding) {
+            if (size - shared == stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[size++ - shared] = binding;
+            innermost.put(binding.name, binding);
+        }
+
+        private void pop(int size) {
+            while (this.size > size) {
+                Binding binding = stack[--this.size - shared];
+                stack[this.size - shared] = null;
+                if (binding.shadowed == null) {
+                    innermost.remove(binding.name);
+                } else {
+                    innermost.put(binding.name, binding.shadowed);
+                }
+            }
+        }
+
     }
 
 }
@@ -1,43 +1,162 @@
 package plc.compiler;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public final class Stdlib {
 
-    private static final Map<String, Type> TYPES = new HashMap<>();
-    private static final Map<String, Function> FUNCTIONS = new HashMap<>();
+    /**
+     * The global registry. It is replaced, never mutated, by the register
+     * methods, so readers on any thread always see a complete snapshot
+     * without locking.
+     */
+    private static volatile Registry registry = new Registry(new HashMap<>(), new HashMap<>());
 
     public static Type getType(String name) throws AnalysisException {
-        if (!TYPES.containsKey(name)) {
-            throw new AnalysisException("Unknown type " + name + ".");
-        }
-        return TYPES.get(name);
+        return registry.getType(name);
     }
 
     public static Function getFunction(String name, int arity) throws AnalysisException {
-        String signature = name + "/" + arity;
-        if (!FUNCTIONS.containsKey(signature)) {
-            throw new AnalysisException("Unknown function " + signature + ".");
-        }
-        return FUNCTIONS.get(signature);
+        return registry.getFunction(name, arity);
     }
 
-    public static void registerType(Type type) {
-        if (TYPES.containsKey(type.getName())) {
-            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
-        }
-        TYPES.put(type.getName(), type);
+    public static synchronized void registerType(Type type) {
+        registry = registry.withType(type);
+    }
+
+    public static synchronized void registerFunction(Function function) {
+        registry = registry.withFunction(function);
+    }
+
+    /**
+     * Returns the current contents of the global registry. Later
+     * registrations are not visible through the returned snapshot, which
+     * gives each compilation a consistent view and can be extended with
+     * {@link Registry#withType(Type)} or {@link Registry#withFunction(Function)}
+     * without affecting other compilations.
+     */
+    public static Registry snapshot() {
+        return registry;
     }
 
-    public static void registerFunction(Function function) {
-        String signature = function.getName() + "/" + function.getParameterTypes().size();
-        if (FUNCTIONS.containsKey(signature)) {
-            throw new IllegalArgumentException("Duplicate registration of function " + signature + ".");
+    /**
+     * An immutable set of types and functions.
+     */
+    public static final class Registry {
+
+        private final Map<String, Type> types;
+
+        /**
+         * Functions by name, with each name's overloads stored in an array
+         * indexed by arity so that resolving a call never builds a signature
+         * string.
+         */
+        private final Map<String, Function[]> functions;
+
+        private volatile String fingerprint;
+
+        private Registry(Map<String, Type> types, Map<String, Function[]> functions) {
+            this.types = types;
+            this.functions = functions;
+        }
+
+        /**
+         * Returns a hash of every type and function signature in the registry,
+         * which is the same for registries with the same contents, so it can
+         * be used to tell whether code generated with one registry is still
+         * valid for another.
+         */
+        public String getFingerprint() {
+            String fingerprint = this.fingerprint;
+            if (fingerprint == null) {
+                List<String> entries = new ArrayList<>();
+                for (Type type : types.values()) {
+                    entries.add("type " + type.getName() + " " + type.getJvmName());
+                }
+                for (Function[] overloads : functions.values()) {
+                    for (Function function : overloads) {
+                        if (function != null) {
+                            StringBuilder entry = new StringBuilder("function ").append(function.getName())
+                                    .append(" ").append(function.getJvmName()).append(" (");
+                            for (Type type : function.getParameterTypes()) {
+                                entry.append(type.getName()).append(" ").append(type.getJvmName()).append(",");
+                            }
+                            Type returnType = function.getReturnType();
+                            entries.add(entry.append(") ").append(returnType.getName()).append(" ").append(returnType.getJvmName()).toString());
+                        }
+                    }
+                }
+                Collections.sort(entries);
+                try {
+                    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    for (String entry : entries) {
+                        digest.update(entry.getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte) '\n');
+                    }
+                    StringBuilder hex = new StringBuilder();
+                    for (byte b : digest.digest()) {
+                        hex.append(String.format("%02x", b));
+                    }
+                    fingerprint = this.fingerprint = hex.toString();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return fingerprint;
+        }
+
+        public Type getType(String name) throws AnalysisException {
+            Type type = types.get(name);
+            if (type == null) {
+                throw new AnalysisException("Unknown type " + name + ".");
+            }
+            return type;
         }
-        FUNCTIONS.put(signature, function);
+
+        public Function getFunction(String name, int arity) throws AnalysisException {
+            Function[] overloads = functions.get(name);
+            if (overloads == null || arity >= overloads.length || overloads[arity] == null) {
+                throw new AnalysisException("Unknown function " + name + "/" + arity + ".");
+            }
+            return overloads[arity];
+        }
+
+        /**
+         * Returns a copy of this registry with the type added.
+         */
+        public Registry withType(Type type) {
+            if (types.containsKey(type.getName())) {
+                throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+            }
+            Map<String, Type> types = new HashMap<>(this.types);
+            types.put(type.getName(), type);
+            return new Registry(types, functions);
+        }
+
+        /**
+         * Returns a copy of this registry with the function added.
+         */
+        public Registry withFunction(Function function) {
+            int arity = function.getParameterTypes().size();
+            Function[] overloads = functions.getOrDefault(function.getName(), new Function[0]);
+            if (arity < overloads.length && overloads[arity] != null) {
+                throw new IllegalArgumentException("Duplicate registration of function " + function.getName() + "/" + arity + ".");
+            }
+            overloads = Arrays.copyOf(overloads, Math.max(overloads.length, arity + 1));
+            overloads[arity] = function;
+            Map<String, Function[]> functions = new HashMap<>(this.functions);
+            functions.put(function.getName(), overloads);
+            return new Registry(types, functions);
+        }
+
     }
 
     public static final class Type {
@@ -83,12 +202,23 @@ public final class Stdlib {
         private final String jvmName;
         private final List<Type> parameterTypes;
         private final Type returnType;
+        private final Optional<Implementation> implementation;
 
         public Function(String name, String jvmName, List<Type> parameterTypes, Type returnType) {
+            this(name, jvmName, parameterTypes, returnType, null);
+        }
+
+        /**
+         * Creates a function which can also be called by the
+         * interpreter, which passes the evaluated arguments to the
+         * implementation.
+         */
+        public Function(String name, String jvmName, List<Type> parameterTypes, Type returnType, Implementation implementation) {
             this.name = name;
             this.jvmName = jvmName;
             this.parameterTypes = parameterTypes;
             this.returnType = returnType;
+            this.implementation = Optional.ofNullable(implementation);
         }
 
         public String getName() {
@@ -107,6 +237,10 @@ public final class Stdlib {
             return returnType;
         }
 
+        public Optional<Implementation> getImplementation() {
+            return implementation;
+        }
+
         @Override
         public String toString() {
             return "Function{" +
@@ -119,6 +253,18 @@ public final class Stdlib {
 
     }
 
+    /**
+     * The behavior of a function when it is interpreted. Arguments are passed
+     * as Integer, Double, Boolean or String values, and the result should be
+     * one of those or {@code null} for VOID.
+     */
+    @FunctionalInterface
+    public interface Implementation {
+
+        Object invoke(List<Object> arguments);
+
+    }
+
     static {
         registerType(Type.BOOLEAN);
         registerType(Type.INTEGER);
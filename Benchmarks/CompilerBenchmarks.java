@@ -0,0 +1,130 @@
+package plc.compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of each phase of the compiler separately, with the
+ * input of each phase prepared once from the output of the previous phases,
+ * and of the whole pipeline from source to Java code with a {@link Compiler}.
+ * The {@link Programs.Shape#CALL} programs at each depth show that analyzing
+ * nested calls takes time linear in their depth rather than exponential.
+ *
+ * The benchmarks are run with the JMH annotation processor and runner on the
+ * class path, for example from an IDE or with {@link #main}, which also
+ * enables the GC profiler to report the allocation rate of each phase.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerBenchmarks {
+
+    @Param({"100", "10000"})
+    public int statements;
+
+    @Param({"1", "8", "32"})
+    public int depth;
+
+    @Param({"ARITHMETIC", "STRING", "CALL"})
+    public Programs.Shape shape;
+
+    private String source;
+    private List<Token> tokens;
+    private Ast.Source ast;
+    private Ast.Source analyzed;
+    private final Compiler compiler = new Compiler(Programs.STDLIB, CompilationListener.NONE);
+    private final Compiler measured = new Compiler(Programs.STDLIB, new HistogramListener());
+
+    @Setup
+    public void setup() {
+        source = Programs.generate(shape, statements, depth);
+        tokens = Lexer.lex(source);
+        ast = (Ast.Source) Parser.parse(tokens);
+        analyzed = (Ast.Source) new Analyzer(new Scope(null), Programs.STDLIB).visit(ast);
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return Lexer.lex(source);
+    }
+
+    @Benchmark
+    public List<Token> lexParallel() {
+        return Lexer.lexParallel(source);
+    }
+
+    @Benchmark
+    public Ast parse() {
+        return Parser.parse(tokens);
+    }
+
+    @Benchmark
+    public Ast analyze() {
+        return new Analyzer(new Scope(null), Programs.STDLIB).visit(ast);
+    }
+
+    @Benchmark
+    public Ast analyzeParallel() {
+        return new ParallelAnalyzer(ForkJoinPool.commonPool(), Programs.STDLIB).analyze(ast);
+    }
+
+    @Benchmark
+    public String generate() {
+        return generate(analyzed);
+    }
+
+    @Benchmark
+    public String generateParallel() {
+        return new ParallelGenerator().generate(analyzed);
+    }
+
+    @Benchmark
+    public String compile() {
+        return compiler.compile(source);
+    }
+
+    /**
+     * Compiles with a {@link HistogramListener}, which shows the cost of
+     * measuring each compilation compared to {@link #compile}.
+     */
+    @Benchmark
+    public String compileWithMetrics() {
+        return measured.compile(source);
+    }
+
+    private static String generate(Ast.Source ast) {
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(ast);
+        return writer.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CompilerBenchmarks.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new org.openjdk.jmh.runner.Runner(options).run();
+    }
+
+}
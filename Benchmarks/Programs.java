@@ -0,0 +1,84 @@
+package plc.compiler;
+
+import java.util.Arrays;
+
+/**
+ * Generates synthetic programs for the benchmarks. Every program declares an
+ * INTEGER {@code x} and a STRING {@code s} and then assigns expressions to one
+ * of them, printing it every few statements. Arithmetic expressions are nested
+ * in groups as deep as the given depth, while string expressions are chains of
+ * as many concatenations. Call programs instead print calls of {@code ABS}
+ * nested as deep as the given depth, which must be analyzed in time linear in
+ * their depth.
+ */
+final class Programs {
+
+    enum Shape {
+        ARITHMETIC,
+        STRING,
+        CALL
+    }
+
+    /**
+     * The standard library with the {@code ABS} function called by the
+     * {@link Shape#CALL} programs.
+     */
+    static final Stdlib.Registry STDLIB = Stdlib.snapshot().withFunction(
+            new Stdlib.Function("ABS", "Math.abs", Arrays.asList(Stdlib.Type.INTEGER), Stdlib.Type.INTEGER));
+
+    private Programs() {}
+
+    static String generate(Shape shape, int statements, int depth) {
+        StringBuilder builder = new StringBuilder("LET x: INTEGER = 1;\nLET s: STRING = \"a\";\n");
+        for (int i = 0; i < statements; i++) {
+            if (shape == Shape.CALL) {
+                builder.append("PRINT(");
+                call(builder, depth, i);
+                builder.append(");\n");
+            } else if (i % 10 == 9) {
+                builder.append(shape == Shape.ARITHMETIC ? "PRINT(x);\n" : "PRINT(s);\n");
+            } else if (shape == Shape.ARITHMETIC) {
+                builder.append("x = ");
+                arithmetic(builder, depth, i);
+                builder.append(";\n");
+            } else {
+                builder.append("s = s");
+                string(builder, depth, i);
+                builder.append(";\n");
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void arithmetic(StringBuilder builder, int depth, int seed) {
+        if (depth == 0) {
+            builder.append(seed % 3 == 0 ? "x" : String.valueOf(seed % 97 + 1));
+            return;
+        }
+        builder.append("(");
+        arithmetic(builder, depth - 1, seed + 1);
+        builder.append(seed % 2 == 0 ? " + " : " * ").append(seed % 7 + 1).append(") - x");
+    }
+
+    private static void call(StringBuilder builder, int depth, int seed) {
+        for (int i = 0; i < depth; i++) {
+            builder.append("ABS(");
+        }
+        builder.append("x - ").append(seed % 97);
+        for (int i = 0; i < depth; i++) {
+            builder.append(")");
+        }
+    }
+
+    private static void string(StringBuilder builder, int depth, int seed) {
+        for (int i = 0; i < depth; i++) {
+            builder.append(" + ");
+            switch ((seed + i) % 3) {
+                case 0: builder.append("\"item ").append(i).append('"'); break;
+                case 1: builder.append("x"); break;
+                default: builder.append("(x + ").append(i).append(")"); break;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,607 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Generates the class file of {@code Main} directly from an analyzed AST,
+ * producing the same program as compiling the output of the {@link Generator}
+ * without going through javac.
+ *
+ * Types are mapped to descriptors through their jvmName, so {@code int},
+ * {@code double} and {@code boolean} values are kept as primitives. Each
+ * variable slot assigned by the {@link Analyzer} is given two local variable
+ * indices so that a slot can hold a double in one block and an int in a
+ * sibling block.
+ */
+public final class BytecodeGenerator implements Ast.Visitor<Void> {
+
+    private static final String MAIN = "Main";
+
+    private final OutputStream output;
+    private final ClassWriter writer = new ClassWriter();
+    private final ClassWriter.Code code = new ClassWriter.Code();
+    private String[] variables = new String[16];
+
+    public BytecodeGenerator(OutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Generates the class file of {@code Main} for the analyzed source.
+     */
+    public static byte[] generate(Ast.Source ast) {
+        java.io.ByteArrayOutputStream output = new java.io.ByteArrayOutputStream();
+        new BytecodeGenerator(output).visit(ast);
+        return output.toByteArray();
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        ClassWriter.Code constructor = new ClassWriter.Code();
+        constructor.local(0x19, 0, 1, 1); //aload
+        constructor.op(0xB7, writer.method("java/lang/Object", "<init>", "()V"), -1); //invokespecial
+        constructor.op(0xB1, 0); //return
+        writer.addMethod(ClassWriter.ACC_PUBLIC, "<init>", "()V", constructor);
+
+        code.reserveLocals(1);
+        for (Ast.Statement statement : ast.getStatements()) {
+            visit(statement);
+        }
+        code.op(0xB1, 0); //return
+        writer.addMethod(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_STATIC, "main", "([Ljava/lang/String;)V", code);
+        try {
+            output.write(writer.toByteArray(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_FINAL | ClassWriter.ACC_SUPER, MAIN, "java/lang/Object"));
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        String descriptor = descriptor(ast.getExpression().getType());
+        if (!descriptor.equals("V")) {
+            code.op(size(descriptor) == 2 ? 0x58 : 0x57, -size(descriptor)); //pop2 or pop
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        int slot = slot(ast.getSlot(), ast.getName());
+        String descriptor = descriptor(ast.getType());
+        variables[slot] = descriptor;
+        if (ast.getValue().isPresent()) {
+            push(ast.getValue().get(), descriptor);
+        } else {
+            pushDefault(descriptor);
+        }
+        store(slot, descriptor);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        int slot = slot(ast.getSlot(), ast.getName());
+        push(ast.getExpression(), variables[slot]);
+        store(slot, variables[slot]);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        ClassWriter.Label otherwise = code.label();
+        ClassWriter.Label end = code.label();
+        visit(ast.getCondition());
+        code.jump(0x99, otherwise, -1); //ifeq
+        for (Ast.Statement statement : ast.getThenStatements()) {
+            visit(statement);
+        }
+        code.jump(0xA7, end, 0); //goto
+        code.mark(otherwise);
+        for (Ast.Statement statement : ast.getElseStatements()) {
+            visit(statement);
+        }
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        ClassWriter.Label condition = code.label();
+        ClassWriter.Label end = code.label();
+        code.mark(condition);
+        visit(ast.getCondition());
+        code.jump(0x99, end, -1); //ifeq
+        for (Ast.Statement statement : ast.getStatements()) {
+            visit(statement);
+        }
+        code.jump(0xA7, condition, 0); //goto
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        Object value = ast.getValue();
+        if (value instanceof Boolean) {
+            code.op((Boolean) value ? 0x04 : 0x03, 1); //iconst_1 or iconst_0
+        } else if (value instanceof Integer) {
+            integer((Integer) value);
+        } else if (value instanceof Double) {
+            double decimal = (Double) value;
+            if (Double.doubleToRawLongBits(decimal) == 0L || decimal == 1.0) {
+                code.op(decimal == 1.0 ? 0x0F : 0x0E, 2); //dconst_1 or dconst_0
+            } else {
+                code.op(0x14, writer.decimal(decimal), 2); //ldc2_w
+            }
+        } else if (value instanceof String) {
+            code.ldc(writer.string((String) value), 1);
+        } else {
+            throw new IllegalStateException("Unsupported literal " + value + ".");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        new Expressions().walk(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        new Expressions().walk(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Concat ast) {
+        new Expressions().walk(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Variable ast) {
+        int slot = slot(ast.getSlot(), ast.getName());
+        String descriptor = variables[slot];
+        code.local(load(descriptor), local(slot), size(descriptor), size(descriptor));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        new Expressions().walk(ast);
+        return null;
+    }
+
+    /**
+     * Emits the code of an expression with an {@link ExpressionWalker}, so
+     * that deeply nested expressions do not overflow the stack. Post-order is
+     * the order of a stack machine: what an expression needs below its
+     * operands, such as a StringBuilder or {@code System.out}, is pushed when
+     * it is entered, each operand is converted to the type it is used as once
+     * it has been pushed, and the instruction combining them is emitted when
+     * the expression is exited.
+     */
+    private final class Expressions extends ExpressionWalker<Ast.Expression> {
+
+        /**
+         * The methods of the calls whose arguments are being pushed, other
+         * than calls to PRINT.
+         */
+        private final Deque<Method> methods = new ArrayDeque<>();
+
+        @Override
+        void enter(Ast.Expression ast) {
+            if (ast instanceof Ast.Expression.Binary && isConcatenation((Ast.Expression.Binary) ast)) {
+                code.op(0xBB, writer.type("java/lang/StringBuilder"), 1); //new
+                code.op(0x59, 1); //dup
+                code.op(0xB7, writer.method("java/lang/StringBuilder", "<init>", "()V"), -1); //invokespecial
+            } else if (ast instanceof Ast.Expression.Concat) {
+                //the builder is created with the length of the literal
+                //operands plus an estimate for each of the others
+                int capacity = 0;
+                for (Ast.Expression operand : ((Ast.Expression.Concat) ast).getOperands()) {
+                    if (operand instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) operand).getValue() instanceof String) {
+                        capacity += ((String) ((Ast.Expression.Literal) operand).getValue()).length();
+                    } else {
+                        capacity += 16;
+                    }
+                }
+                code.op(0xBB, writer.type("java/lang/StringBuilder"), 1); //new
+                code.op(0x59, 1); //dup
+                integer(capacity);
+                code.op(0xB7, writer.method("java/lang/StringBuilder", "<init>", "(I)V"), -2); //invokespecial
+            } else if (ast instanceof Ast.Expression.Function) {
+                Stdlib.Function function = function((Ast.Expression.Function) ast);
+                if (function == Stdlib.Function.PRINT) {
+                    code.op(0xB2, writer.field("java/lang/System", "out", "Ljava/io/PrintStream;"), 1); //getstatic
+                } else {
+                    methods.push(resolve(function));
+                }
+            }
+        }
+
+        @Override
+        void operand(Ast.Expression ast, int index, Ast.Expression operand) {
+            if (ast instanceof Ast.Expression.Binary) {
+                Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+                if (isEquality(binary)) {
+                    convert(operand, comparison(binary));
+                } else if (isConcatenation(binary)) {
+                    append(operand);
+                } else {
+                    convert(operand, descriptor(binary.getType()));
+                }
+            } else if (ast instanceof Ast.Expression.Concat) {
+                append(operand);
+            } else if (ast instanceof Ast.Expression.Function) {
+                if (function((Ast.Expression.Function) ast) == Stdlib.Function.PRINT) {
+                    convert(operand, printable(operand.getType()));
+                } else {
+                    convert(operand, descriptor(methods.peek().getParameterTypes()[index]));
+                }
+            }
+        }
+
+        @Override
+        Ast.Expression exit(Ast.Expression ast, List<Ast.Expression> operands) {
+            if (ast instanceof Ast.Expression.Literal) {
+                visit((Ast.Expression.Literal) ast);
+            } else if (ast instanceof Ast.Expression.Variable) {
+                visit((Ast.Expression.Variable) ast);
+            } else if (ast instanceof Ast.Expression.Binary) {
+                binary((Ast.Expression.Binary) ast);
+            } else if (ast instanceof Ast.Expression.Concat) {
+                code.op(0xB6, writer.method("java/lang/StringBuilder", "toString", "()Ljava/lang/String;"), 0); //invokevirtual
+            } else if (ast instanceof Ast.Expression.Function) {
+                Ast.Expression.Function function = (Ast.Expression.Function) ast;
+                if (function(function) == Stdlib.Function.PRINT) {
+                    String descriptor = printable(function.getArguments().get(0).getType());
+                    code.op(0xB6, writer.method("java/io/PrintStream", "println", "(" + descriptor + ")V"), -1 - size(descriptor)); //invokevirtual
+                } else {
+                    invoke(methods.pop());
+                }
+            }
+            return ast;
+        }
+
+    }
+
+    private static Stdlib.Function function(Ast.Expression.Function ast) {
+        return ast.getFunction().orElseThrow(() ->
+                new IllegalStateException("The function " + ast.getName() + " has not been analyzed."));
+    }
+
+    private static boolean isEquality(Ast.Expression.Binary ast) {
+        return ast.getOperator().equals("==") || ast.getOperator().equals("!=");
+    }
+
+    private static boolean isConcatenation(Ast.Expression.Binary ast) {
+        return !isEquality(ast) && ast.getType() == Stdlib.Type.STRING;
+    }
+
+    /**
+     * Emits the instructions combining the operands of a binary expression,
+     * which have been pushed and converted.
+     */
+    private void binary(Ast.Expression.Binary ast) {
+        String operator = ast.getOperator();
+        if (isEquality(ast)) {
+            equality(comparison(ast), operator.equals("=="));
+        } else if (isConcatenation(ast)) {
+            code.op(0xB6, writer.method("java/lang/StringBuilder", "toString", "()Ljava/lang/String;"), 0); //invokevirtual
+        } else {
+            String descriptor = descriptor(ast.getType());
+            int offset = descriptor.equals("D") ? 3 : 0;
+            int delta = -size(descriptor);
+            switch (operator) {
+                case "+": code.op(0x60 + offset, delta); break; //iadd or dadd
+                case "-": code.op(0x64 + offset, delta); break; //isub or dsub
+                case "*": code.op(0x68 + offset, delta); break; //imul or dmul
+                case "/": code.op(0x6C + offset, delta); break; //idiv or ddiv
+                default: throw new IllegalStateException("Unsupported operator " + operator + ".");
+            }
+        }
+    }
+
+    /**
+     * Emits the invokestatic of a resolved function whose arguments have been
+     * pushed.
+     */
+    private void invoke(Method method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        int delta = 0;
+        for (Class<?> type : method.getParameterTypes()) {
+            String parameter = descriptor(type);
+            descriptor.append(parameter);
+            delta -= size(parameter);
+        }
+        String result = descriptor(method.getReturnType());
+        descriptor.append(")").append(result);
+        String owner = method.getDeclaringClass().getName().replace('.', '/');
+        code.op(0xB8, writer.method(owner, method.getName(), descriptor.toString()), delta + size(result)); //invokestatic
+    }
+
+    /**
+     * Pushes the value of an expression, converting it to the given
+     * descriptor.
+     */
+    private void push(Ast.Expression expression, String target) {
+        visit(expression);
+        convert(expression, target);
+    }
+
+    /**
+     * Converts the value of an expression on top of the stack to the given
+     * descriptor by widening an int to a double or boxing a primitive that is
+     * passed as an object.
+     */
+    private void convert(Ast.Expression expression, String target) {
+        String source = descriptor(expression.getType());
+        if (source.equals(target)) {
+            return;
+        } else if (source.equals("I") && target.equals("D")) {
+            code.op(0x87, 1); //i2d
+        } else if (target.startsWith("L") && !source.startsWith("L")) {
+            box(source);
+        }
+    }
+
+    private void box(String descriptor) {
+        switch (descriptor) {
+            case "I":
+                code.op(0xB8, writer.method("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;"), 0);
+                break;
+            case "D":
+                code.op(0xB8, writer.method("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;"), -1);
+                break;
+            case "Z":
+                code.op(0xB8, writer.method("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;"), 0);
+                break;
+            case "B":
+                code.op(0xB8, writer.method("java/lang/Byte", "valueOf", "(B)Ljava/lang/Byte;"), 0);
+                break;
+            case "C":
+                code.op(0xB8, writer.method("java/lang/Character", "valueOf", "(C)Ljava/lang/Character;"), 0);
+                break;
+            case "S":
+                code.op(0xB8, writer.method("java/lang/Short", "valueOf", "(S)Ljava/lang/Short;"), 0);
+                break;
+            case "J":
+                code.op(0xB8, writer.method("java/lang/Long", "valueOf", "(J)Ljava/lang/Long;"), -1);
+                break;
+            case "F":
+                code.op(0xB8, writer.method("java/lang/Float", "valueOf", "(F)Ljava/lang/Float;"), 0);
+                break;
+        }
+    }
+
+    private void pushDefault(String descriptor) {
+        switch (descriptor) {
+            case "D": code.op(0x0E, 2); break; //dconst_0
+            case "J": code.op(0x09, 2); break; //lconst_0
+            case "F": code.op(0x0B, 1); break; //fconst_0
+            case "I": case "Z": case "B": case "C": case "S": code.op(0x03, 1); break; //iconst_0
+            default: code.op(0x01, 1); break; //aconst_null
+        }
+    }
+
+    /**
+     * Pushes an int constant with the shortest instruction for its value.
+     */
+    private void integer(int integer) {
+        if (integer >= -1 && integer <= 5) {
+            code.op(0x03 + integer, 1); //iconst_<n>
+        } else if (integer >= Byte.MIN_VALUE && integer <= Byte.MAX_VALUE) {
+            code.op(0x10, (byte) integer, 1); //bipush
+        } else if (integer >= Short.MIN_VALUE && integer <= Short.MAX_VALUE) {
+            code.op(0x11, integer & 0xFFFF, 1); //sipush
+        } else {
+            code.ldc(writer.integer(integer), 1);
+        }
+    }
+
+    /**
+     * Appends the value of an expression on top of the stack to the
+     * StringBuilder below it, leaving the builder on the stack.
+     */
+    private void append(Ast.Expression expression) {
+        String descriptor = printable(expression.getType());
+        convert(expression, descriptor);
+        code.op(0xB6, writer.method("java/lang/StringBuilder", "append", "(" + descriptor + ")Ljava/lang/StringBuilder;"), -size(descriptor));
+    }
+
+    /**
+     * Returns the descriptor of the overloads of {@code println} and
+     * {@code append} a value of the type is passed to.
+     */
+    private static String printable(Stdlib.Type type) {
+        String descriptor = descriptor(type);
+        if (!Arrays.asList("I", "J", "F", "D", "Z", "C", "Ljava/lang/String;").contains(descriptor)) {
+            return "Ljava/lang/Object;";
+        }
+        return descriptor;
+    }
+
+    /**
+     * Returns the descriptor both operands of an equality are compared as.
+     * Numbers are compared as primitives, promoting an int compared to a
+     * double, and any other values are compared with
+     * {@link java.util.Objects#equals}.
+     */
+    private static String comparison(Ast.Expression.Binary ast) {
+        String l = descriptor(ast.getLeft().getType());
+        String r = descriptor(ast.getRight().getType());
+        boolean numeric = (l.equals("I") || l.equals("D")) && (r.equals("I") || r.equals("D"));
+        if (numeric && (l.equals("D") || r.equals("D"))) {
+            return "D";
+        } else if (numeric || (l.equals("Z") && r.equals("Z"))) {
+            return l;
+        }
+        return "Ljava/lang/Object;";
+    }
+
+    /**
+     * Pushes the boolean result of comparing the two values on top of the
+     * stack, which have been converted to the given descriptor.
+     */
+    private void equality(String descriptor, boolean equal) {
+        if (descriptor.equals("D")) {
+            code.op(0x97, -3); //dcmpl
+            condition(equal ? 0x99 : 0x9A, -1); //ifeq or ifne
+        } else if (!descriptor.startsWith("L")) {
+            condition(equal ? 0x9F : 0xA0, -2); //if_icmpeq or if_icmpne
+        } else {
+            code.op(0xB8, writer.method("java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z"), -1);
+            if (!equal) {
+                code.op(0x04, 1); //iconst_1
+                code.op(0x82, -1); //ixor
+            }
+        }
+    }
+
+    /**
+     * Converts a conditional jump into a boolean value on the stack.
+     */
+    private void condition(int opcode, int delta) {
+        ClassWriter.Label isTrue = code.label();
+        ClassWriter.Label end = code.label();
+        code.jump(opcode, isTrue, delta);
+        int stack = code.getStack();
+        code.op(0x03, 1); //iconst_0
+        code.jump(0xA7, end, 0); //goto
+        code.setStack(stack);
+        code.mark(isTrue);
+        code.op(0x04, 1); //iconst_1
+        code.mark(end);
+    }
+
+    private void store(int slot, String descriptor) {
+        int size = size(descriptor);
+        code.local(load(descriptor) + 0x21, local(slot), size, -size); //istore, dstore or astore
+    }
+
+    /**
+     * Returns the load instruction for a descriptor; the matching store is
+     * always 0x21 higher.
+     */
+    private static int load(String descriptor) {
+        switch (descriptor) {
+            case "I": case "Z": case "B": case "C": case "S": return 0x15; //iload
+            case "J": return 0x16; //lload
+            case "F": return 0x17; //fload
+            case "D": return 0x18; //dload
+            default: return 0x19; //aload
+        }
+    }
+
+    private int slot(int slot, String name) {
+        if (slot < 0) {
+            throw new IllegalStateException("The variable " + name + " has not been analyzed.");
+        } else if (slot >= variables.length) {
+            variables = Arrays.copyOf(variables, Math.max(slot + 1, variables.length * 2));
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the local variable index of a slot, after the {@code args}
+     * parameter of main.
+     */
+    private static int local(int slot) {
+        return 1 + 2 * slot;
+    }
+
+    private static int size(String descriptor) {
+        switch (descriptor) {
+            case "V": return 0;
+            case "D": case "J": return 2;
+            default: return 1;
+        }
+    }
+
+    private static String descriptor(Stdlib.Type type) {
+        return type == Stdlib.Type.VOID ? "V" : descriptor(type.getJvmName());
+    }
+
+    /**
+     * Maps the jvmName of a type, as stored in an analyzed declaration, to its
+     * descriptor.
+     */
+    private static String descriptor(String jvmName) {
+        switch (jvmName) {
+            case "boolean": return "Z";
+            case "byte": return "B";
+            case "char": return "C";
+            case "short": return "S";
+            case "int": return "I";
+            case "long": return "J";
+            case "float": return "F";
+            case "double": return "D";
+            case "void": return "V";
+            case "String": return "Ljava/lang/String;";
+            case "Object": return "Ljava/lang/Object;";
+            default: return "L" + jvmName.replace('.', '/') + ";";
+        }
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isPrimitive()) {
+            return descriptor(type.getName());
+        } else if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        }
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+    /**
+     * Finds the static method a function's jvmName refers to, such as
+     * {@code Math.abs}, whose parameters match the function's parameter types.
+     */
+    private static Method resolve(Stdlib.Function function) {
+        String jvmName = function.getJvmName();
+        int dot = jvmName.lastIndexOf('.');
+        if (dot > 0) {
+            String name = jvmName.substring(dot + 1);
+            for (String owner : Arrays.asList(jvmName.substring(0, dot), "java.lang." + jvmName.substring(0, dot))) {
+                try {
+                    for (Method method : Class.forName(owner).getMethods()) {
+                        if (method.getName().equals(name) && Modifier.isStatic(method.getModifiers())
+                                && matches(method, function)) {
+                            return method;
+                        }
+                    }
+                } catch (ClassNotFoundException ignored) {
+                }
+            }
+        }
+        throw new IllegalStateException("The function " + function.getName() + " does not refer to a static method.");
+    }
+
+    private static boolean matches(Method method, Stdlib.Function function) {
+        Class<?>[] parameters = method.getParameterTypes();
+        List<Stdlib.Type> types = function.getParameterTypes();
+        if (parameters.length != types.size() || !descriptor(method.getReturnType()).equals(descriptor(function.getReturnType()))) {
+            return false;
+        }
+        for (int i = 0; i < parameters.length; i++) {
+            if (!descriptor(parameters[i]).equals(descriptor(types.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
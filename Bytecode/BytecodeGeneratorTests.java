@@ -0,0 +1,164 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Runs source through the lexer, parser, and analyzer, then loads and runs the
+ * generated class file and checks what it printed.
+ */
+final class BytecodeGeneratorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) throws Exception {
+        test(input, expected, Stdlib.snapshot());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Hello World",
+                        "PRINT(\"Hello World\");",
+                        lines("Hello World")
+                ),
+                Arguments.of("Arithmetic",
+                        "PRINT(1 + 2 * 3); PRINT(7 / 2); PRINT(7.0 / 2); PRINT((1 + 2) * 3 - 4); PRINT(1000 * 100000);",
+                        lines("7", "3", "3.5", "5", "100000000")
+                ),
+                Arguments.of("Integer Overflow",
+                        "PRINT(2147483647 + 1);",
+                        lines("-2147483648")
+                ),
+                Arguments.of("Concatenation",
+                        "PRINT(1 + 2 + \"a\" + 1.5 + TRUE);",
+                        lines("3a1.5true")
+                ),
+                Arguments.of("Concatenation Chain",
+                        "LET n: INTEGER = 1; LET s: STRING = \"x\"; PRINT(n + 2 + s + n + 1.5 + (n + 1) + \"y\" + \"z\" + TRUE);",
+                        lines("3x11.52yztrue")
+                ),
+                Arguments.of("Equality",
+                        "PRINT(1 == 1.0); PRINT(\"a\" != \"b\"); PRINT(TRUE == FALSE); PRINT(2 != 2);",
+                        lines("true", "true", "false", "false")
+                ),
+                Arguments.of("Decimal Variable",
+                        "LET x: DECIMAL = 1; x = x + 2; PRINT(x);",
+                        lines("3.0")
+                ),
+                Arguments.of("While",
+                        "LET n: INTEGER = 3; WHILE n != 0 DO PRINT(n); n = n - 1; END",
+                        lines("3", "2", "1")
+                ),
+                Arguments.of("If Shadowing",
+                        "LET x: STRING = \"outer\"; " +
+                        "IF TRUE THEN LET x: INTEGER = 1; PRINT(x); ELSE PRINT(x); END " +
+                        "IF FALSE THEN PRINT(x); ELSE LET y: DECIMAL = 2; PRINT(y); END " +
+                        "PRINT(x);",
+                        lines("1", "2.0", "outer")
+                )
+        );
+    }
+
+    /**
+     * Generates {@code ((x + x) + x) ...} nested deeper than a recursive
+     * visitor could on a default stack, though shallow enough to fit in the
+     * 64KB a method's code is limited to.
+     */
+    @Test
+    void testDeepExpression() throws Exception {
+        int depth = 10000;
+        StringBuilder input = new StringBuilder("LET x: INTEGER = 1; PRINT(");
+        for (int i = 0; i < depth; i++) {
+            input.append("(");
+        }
+        input.append("x");
+        for (int i = 0; i < depth; i++) {
+            input.append(" + x)");
+        }
+        input.append(");");
+        test(input.toString(), (depth + 1) + System.lineSeparator(), Stdlib.snapshot());
+    }
+
+    @Test
+    void testStaticMethod() throws Exception {
+        Stdlib.Registry stdlib = Stdlib.snapshot().withFunction(new Stdlib.Function("ABS", "Math.abs",
+                Arrays.asList(Stdlib.Type.DECIMAL), Stdlib.Type.DECIMAL));
+        test("PRINT(ABS(0 - 3));", lines("3.0"), stdlib);
+    }
+
+    /**
+     * Calls a method returning a {@code java.lang} class other than String
+     * or Object, whose descriptor has the full name of the class.
+     */
+    @Test
+    void testStaticMethodObject() throws Exception {
+        Stdlib.Type boxed = new Stdlib.Type("BOXED", "java.lang.Integer");
+        Stdlib.Registry stdlib = Stdlib.snapshot().withType(boxed).withFunction(new Stdlib.Function("BOX", "Integer.valueOf",
+                Arrays.asList(Stdlib.Type.INTEGER), boxed));
+        test("PRINT(BOX(100));", lines("100"), stdlib);
+    }
+
+    /**
+     * Calls methods taking and returning primitives other than boolean, int
+     * and double, and stores, prints and compares their values.
+     */
+    @Test
+    void testStaticMethodPrimitive() throws Exception {
+        Stdlib.Type wide = new Stdlib.Type("LONG", "long");
+        Stdlib.Type single = new Stdlib.Type("FLOAT", "float");
+        Stdlib.Type character = new Stdlib.Type("CHAR", "char");
+        Stdlib.Registry stdlib = Stdlib.snapshot().withType(wide).withType(single).withType(character)
+                .withFunction(new Stdlib.Function("WIDE", "Math.multiplyFull", Arrays.asList(Stdlib.Type.INTEGER, Stdlib.Type.INTEGER), wide))
+                .withFunction(new Stdlib.Function("NEGATE", "Math.negateExact", Arrays.asList(wide), wide))
+                .withFunction(new Stdlib.Function("FLOAT", "Float.intBitsToFloat", Arrays.asList(Stdlib.Type.INTEGER), single))
+                .withFunction(new Stdlib.Function("DIGIT", "Character.forDigit", Arrays.asList(Stdlib.Type.INTEGER, Stdlib.Type.INTEGER), character));
+        test("LET y: LONG = WIDE(100000, 100000); LET z: LONG; PRINT(NEGATE(y)); PRINT(z); PRINT(y == y);"
+                + "PRINT(\"f\" + FLOAT(1069547520)); PRINT(DIGIT(11, 16));",
+                lines("-10000000000", "0", "true", "f1.5", "b"), stdlib);
+    }
+
+    private static String lines(String... lines) {
+        return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+    }
+
+    private static void test(String input, String expected, Stdlib.Registry stdlib) throws Exception {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null), stdlib).visit(Parser.parse(Lexer.lex(input)));
+        Assertions.assertEquals(expected, run(ast));
+        Assertions.assertEquals(expected, run(new Optimizer().visit(ast)), "optimized");
+    }
+
+    private static String run(Ast.Source ast) throws Exception {
+        byte[] bytes = BytecodeGenerator.generate(ast);
+        Class<?> main = new ClassLoader(BytecodeGeneratorTests.class.getClassLoader()) {
+
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                if (!name.equals("Main")) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+
+        }.loadClass("Main");
+        Method method = main.getMethod("main", String[].class);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            method.invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString();
+    }
+
+}
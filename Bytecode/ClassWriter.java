@@ -0,0 +1,299 @@
+package plc.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for class files with a constant pool and methods that only
+ * have a Code attribute. Classes are written with version 49 (Java 5), which
+ * is still loaded by current JVMs but verified by type inference, so no stack
+ * map frames need to be computed for branches.
+ */
+final class ClassWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolData = new DataOutputStream(pool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private final List<byte[]> methods = new ArrayList<>();
+    private int poolSize = 1;
+
+    int utf8(String value) {
+        return constant("Utf8:" + value, data -> {
+            data.writeByte(1);
+            data.writeUTF(value);
+        }, 1);
+    }
+
+    int integer(int value) {
+        return constant("Integer:" + value, data -> {
+            data.writeByte(3);
+            data.writeInt(value);
+        }, 1);
+    }
+
+    int decimal(double value) {
+        return constant("Double:" + Double.doubleToRawLongBits(value), data -> {
+            data.writeByte(6);
+            data.writeDouble(value);
+        }, 2);
+    }
+
+    int type(String internalName) {
+        int name = utf8(internalName);
+        return constant("Class:" + internalName, data -> {
+            data.writeByte(7);
+            data.writeShort(name);
+        }, 1);
+    }
+
+    int string(String value) {
+        int utf8 = utf8(value);
+        return constant("String:" + value, data -> {
+            data.writeByte(8);
+            data.writeShort(utf8);
+        }, 1);
+    }
+
+    int field(String owner, String name, String descriptor) {
+        return member(9, owner, name, descriptor);
+    }
+
+    int method(String owner, String name, String descriptor) {
+        return member(10, owner, name, descriptor);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int type = type(owner);
+        int nameUtf8 = utf8(name);
+        int descriptorUtf8 = utf8(descriptor);
+        int nameAndType = constant("NameAndType:" + name + ":" + descriptor, data -> {
+            data.writeByte(12);
+            data.writeShort(nameUtf8);
+            data.writeShort(descriptorUtf8);
+        }, 1);
+        return constant(tag + ":" + owner + "." + name + ":" + descriptor, data -> {
+            data.writeByte(tag);
+            data.writeShort(type);
+            data.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private int constant(String key, Entry entry, int size) {
+        Integer index = constants.get(key);
+        if (index == null) {
+            index = poolSize;
+            try {
+                entry.write(poolData);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            poolSize += size;
+            if (poolSize > 0xFFFF) {
+                throw new IllegalStateException("Too many constants for a class file.");
+            }
+            constants.put(key, index);
+        }
+        return index;
+    }
+
+    void addMethod(int access, String name, String descriptor, Code code) {
+        ByteArrayOutputStream method = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(method);
+        byte[] bytecode = code.toByteArray();
+        try {
+            data.writeShort(access);
+            data.writeShort(utf8(name));
+            data.writeShort(utf8(descriptor));
+            data.writeShort(1);
+            data.writeShort(utf8("Code"));
+            data.writeInt(12 + bytecode.length);
+            data.writeShort(code.maxStack);
+            data.writeShort(code.maxLocals);
+            data.writeInt(bytecode.length);
+            data.write(bytecode);
+            data.writeShort(0); //exception table
+            data.writeShort(0); //attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(method.toByteArray());
+    }
+
+    byte[] toByteArray(int access, String name, String superName) {
+        int thisType = type(name);
+        int superType = type(superName);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            data.writeInt(0xCAFEBABE);
+            data.writeShort(0);
+            data.writeShort(49);
+            data.writeShort(poolSize);
+            pool.writeTo(data);
+            data.writeShort(access);
+            data.writeShort(thisType);
+            data.writeShort(superType);
+            data.writeShort(0); //interfaces
+            data.writeShort(0); //fields
+            data.writeShort(methods.size());
+            for (byte[] method : methods) {
+                data.write(method);
+            }
+            data.writeShort(0); //attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface Entry {
+
+        void write(DataOutputStream data) throws IOException;
+
+    }
+
+    /**
+     * The body of a method. Every instruction is emitted with the change it
+     * makes to the operand stack so that the maximum depth can be tracked.
+     */
+    static final class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals = 0;
+
+        void op(int opcode, int delta) {
+            bytes.write(opcode);
+            adjust(delta);
+        }
+
+        void op(int opcode, int operand, int delta) {
+            bytes.write(opcode);
+            u2(operand);
+            adjust(delta);
+        }
+
+        /**
+         * Emits an instruction with a one byte operand, such as bipush.
+         */
+        void op(int opcode, byte operand, int delta) {
+            bytes.write(opcode);
+            bytes.write(operand);
+            adjust(delta);
+        }
+
+        /**
+         * Emits a load or store of a local variable, using a wide instruction
+         * if the index does not fit in a byte.
+         */
+        void local(int opcode, int index, int size, int delta) {
+            if (index > 0xFF) {
+                bytes.write(0xC4);
+                bytes.write(opcode);
+                u2(index);
+            } else {
+                bytes.write(opcode);
+                bytes.write(index);
+            }
+            maxLocals = Math.max(maxLocals, index + size);
+            adjust(delta);
+        }
+
+        void ldc(int index, int delta) {
+            if (index > 0xFF) {
+                op(0x13, index, delta);
+            } else {
+                bytes.write(0x12);
+                bytes.write(index);
+                adjust(delta);
+            }
+        }
+
+        void jump(int opcode, Label label, int delta) {
+            label.references.add(bytes.size());
+            bytes.write(opcode);
+            u2(0);
+            adjust(delta);
+        }
+
+        Label label() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        void mark(Label label) {
+            label.position = bytes.size();
+        }
+
+        int getStack() {
+            return stack;
+        }
+
+        /**
+         * Sets the stack depth after an unconditional jump, where it is the
+         * depth at the jump's target rather than after the previous
+         * instruction.
+         */
+        void setStack(int stack) {
+            this.stack = stack;
+        }
+
+        void reserveLocals(int locals) {
+            maxLocals = Math.max(maxLocals, locals);
+        }
+
+        private void u2(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+
+        private void adjust(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        /**
+         * Returns the code with the offsets of all jumps filled in.
+         */
+        private byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            if (code.length > 0xFFFF) {
+                throw new IllegalStateException("Method is too large for a class file.");
+            }
+            for (Label label : labels) {
+                for (int reference : label.references) {
+                    int offset = label.position - reference;
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Jump is too far for a class file.");
+                    }
+                    code[reference + 1] = (byte) (offset >> 8);
+                    code[reference + 2] = (byte) offset;
+                }
+            }
+            return code;
+        }
+
+    }
+
+    static final class Label {
+
+        private final List<Integer> references = new ArrayList<>();
+        private int position = -1;
+
+    }
+
+}
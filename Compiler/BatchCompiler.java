@@ -0,0 +1,144 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Compiles many sources in parallel on a {@link ForkJoinPool}. The sources
+ * are compiled by a parallel stream run in the pool, which splits them into
+ * tasks that idle workers steal from busy ones.
+ *
+ * Every compilation creates its own analyzer, scope and generator, so the
+ * only state shared between workers is the {@link Stdlib.Registry}, which is
+ * immutable. All sources of a batch are compiled with the snapshot of the
+ * Stdlib taken when the batch starts.
+ */
+public final class BatchCompiler {
+
+    private final ForkJoinPool pool;
+    private final CompilationListener listener;
+
+    public BatchCompiler() {
+        this(ForkJoinPool.commonPool(), CompilationListener.NONE);
+    }
+
+    /**
+     * Creates a batch compiler running on the given pool, which reports every
+     * compilation to the listener. As the listener is called from all workers
+     * it must be thread safe.
+     */
+    public BatchCompiler(ForkJoinPool pool, CompilationListener listener) {
+        this.pool = pool;
+        this.listener = listener;
+    }
+
+    /**
+     * Compiles the given sources, named by their index, and returns the
+     * results in the same order.
+     */
+    public List<Result> compile(List<String> sources) {
+        return run(sources.size(), String::valueOf, sources::get);
+    }
+
+    /**
+     * Compiles the given files, named by their path, and returns the results
+     * in the same order. A file that cannot be read fails with an
+     * {@link UncheckedIOException}.
+     */
+    public List<Result> compileFiles(List<Path> files) {
+        return run(files.size(), i -> files.get(i).toString(), i -> {
+            try {
+                return new String(Files.readAllBytes(files.get(i)), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Compiles the files in a directory whose names match the given glob,
+     * such as {@code "*.txt"}, in the order of their names.
+     */
+    public List<Result> compileDirectory(Path directory, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return compileFiles(files);
+    }
+
+    private List<Result> run(int size, IntFunction<String> names, IntFunction<String> sources) {
+        Compiler compiler = new Compiler(Stdlib.snapshot(), listener);
+        Result[] results = new Result[size];
+        pool.submit(() -> IntStream.range(0, size).parallel().forEach(index -> {
+            String name = names.apply(index);
+            try {
+                results[index] = new Result(name, compiler.compile(sources.apply(index)), null);
+            } catch (RuntimeException e) {
+                results[index] = new Result(name, null, e);
+            }
+        })).join();
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * The result of compiling one source, which is either the generated Java
+     * code or the exception that stopped the compilation.
+     */
+    public static final class Result {
+
+        private final String name;
+        private final Optional<String> output;
+        private final Optional<RuntimeException> exception;
+
+        private Result(String name, String output, RuntimeException exception) {
+            this.name = name;
+            this.output = Optional.ofNullable(output);
+            this.exception = Optional.ofNullable(exception);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isSuccess() {
+            return output.isPresent();
+        }
+
+        public Optional<String> getOutput() {
+            return output;
+        }
+
+        public Optional<RuntimeException> getException() {
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "name='" + name + '\'' +
+                    ", output=" + output +
+                    ", exception=" + exception +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache in front of a {@link Compiler} which returns the output of earlier
+ * compilations of the same source. Entries are addressed by a hash of the
+ * source, the kind of output, and the {@link Stdlib.Registry#getFingerprint()
+ * fingerprint} of the types and functions it was compiled with, so once a
+ * type or function is registered, sources compiled before no longer match
+ * and are compiled again.
+ *
+ * Recently used entries are kept in memory, and every entry can also be
+ * written to a directory so that it survives restarts. The directory is only
+ * a cache: entries that cannot be read or written are compiled again. Sources
+ * that fail to compile are not cached.
+ */
+public final class CompilationCache {
+
+    /**
+     * The version of the compiler's output, which is part of every key so
+     * that entries on disk are not used by a compiler that would generate
+     * different code. It must be increased whenever the output changes.
+     */
+    private static final int VERSION = 1;
+
+    private final Map<String, byte[]> memory;
+    private final Optional<Path> directory;
+    private final CompilationListener listener;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CompilationCache(int capacity) {
+        this(capacity, Optional.empty(), CompilationListener.NONE);
+    }
+
+    /**
+     * Creates a cache keeping up to the given number of entries in memory and
+     * all entries in the directory, if present, which compiles with the given
+     * listener on a miss.
+     */
+    public CompilationCache(int capacity, Optional<Path> directory, CompilationListener listener) {
+        this.memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > capacity;
+            }
+
+        };
+        this.directory = directory;
+        this.listener = listener;
+    }
+
+    public String compile(String input) throws ParseException, AnalysisException {
+        return compile(input, Stdlib.snapshot());
+    }
+
+    public String compile(String input, Stdlib.Registry stdlib) throws ParseException, AnalysisException {
+        return new String(get("java", input, stdlib), StandardCharsets.UTF_8);
+    }
+
+    public byte[] compileClass(String input) throws ParseException, AnalysisException {
+        return compileClass(input, Stdlib.snapshot());
+    }
+
+    public byte[] compileClass(String input, Stdlib.Registry stdlib) throws ParseException, AnalysisException {
+        return get("class", input, stdlib).clone();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private byte[] get(String kind, String input, Stdlib.Registry stdlib) {
+        String key = key(kind, input, stdlib);
+        byte[] output;
+        synchronized (memory) {
+            output = memory.get(key);
+        }
+        if (output == null) {
+            output = read(key);
+            if (output == null) {
+                misses.incrementAndGet();
+                Compiler compiler = new Compiler(stdlib, listener);
+                output = kind.equals("class") ? compiler.compileClass(input) : compiler.compile(input).getBytes(StandardCharsets.UTF_8);
+                write(key, output);
+            } else {
+                hits.incrementAndGet();
+            }
+            synchronized (memory) {
+                memory.put(key, output);
+            }
+        } else {
+            hits.incrementAndGet();
+        }
+        return output;
+    }
+
+    private static String key(String kind, String input, Stdlib.Registry stdlib) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((VERSION + " " + kind + " " + stdlib.getFingerprint() + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the file of an entry, in a subdirectory named by the first two
+     * characters of the key so that no directory holds too many files.
+     */
+    private Optional<Path> file(String key) {
+        return directory.map(directory -> directory.resolve(key.substring(0, 2)).resolve(key.substring(2)));
+    }
+
+    private byte[] read(String key) {
+        Optional<Path> file = file(key);
+        if (!file.isPresent()) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file.get());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry to a temporary file first and then moves it into place,
+     * so that concurrent readers never see a partially written entry.
+     */
+    private void write(String key, byte[] output) {
+        Optional<Path> file = file(key);
+        if (!file.isPresent()) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.get().getParent());
+            Path temporary = Files.createTempFile(file.get().getParent(), key.substring(2), ".tmp");
+            Files.write(temporary, output);
+            Files.move(temporary, file.get(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            //the entry is compiled again the next time
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package plc.compiler;
+
+/**
+ * Receives the progress and metrics of compilations run by a {@link Compiler}.
+ * All methods do nothing by default, so a listener only overrides what it is
+ * interested in. Listeners passed to a compiler that is used from several
+ * threads must be thread safe.
+ */
+public interface CompilationListener {
+
+    /**
+     * A listener that ignores everything. A compiler using it does not
+     * measure anything in the first place.
+     */
+    CompilationListener NONE = new CompilationListener() {};
+
+    enum Phase {
+        LEX,
+        PARSE,
+        ANALYZE,
+        OPTIMIZE,
+        GENERATE
+    }
+
+    default void phaseStarted(Phase phase) {}
+
+    default void phaseCompleted(Phase phase, long nanos) {}
+
+    default void compilationCompleted(CompilationMetrics metrics) {}
+
+    /**
+     * Called instead of {@link #compilationCompleted} when a phase throws,
+     * such as a {@link ParseException} for invalid input.
+     */
+    default void compilationFailed(Phase phase, RuntimeException exception) {}
+
+}
@@ -0,0 +1,61 @@
+package plc.compiler;
+
+import java.util.Arrays;
+
+/**
+ * The measurements of a single compilation: the wall time of each phase, the
+ * number of tokens, the number of nodes in the analyzed AST, the deepest
+ * nesting of scopes, and the number of bytes of Java code generated.
+ */
+public final class CompilationMetrics {
+
+    private final long[] nanos;
+    private final int tokens;
+    private final int nodes;
+    private final int scopeDepth;
+    private final int bytes;
+
+    CompilationMetrics(long[] nanos, int tokens, int nodes, int scopeDepth, int bytes) {
+        this.nanos = nanos;
+        this.tokens = tokens;
+        this.nodes = nodes;
+        this.scopeDepth = scopeDepth;
+        this.bytes = bytes;
+    }
+
+    public long getNanos(CompilationListener.Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return Arrays.stream(nanos).sum();
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getScopeDepth() {
+        return scopeDepth;
+    }
+
+    public int getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationMetrics{" +
+                "nanos=" + Arrays.toString(nanos) +
+                ", tokens=" + tokens +
+                ", nodes=" + nodes +
+                ", scopeDepth=" + scopeDepth +
+                ", bytes=" + bytes +
+                '}';
+    }
+
+}
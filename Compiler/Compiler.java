@@ -0,0 +1,303 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compiles source code to the Java code or the class file of a {@code Main}
+ * class by running each phase of the compiler in turn: lexing, parsing,
+ * analysis, optimization and generation.
+ *
+ * Each compilation is reported to a {@link CompilationListener}. With the
+ * default {@link CompilationListener#NONE} nothing is timed or counted, so
+ * the listener only costs something once one is actually used.
+ */
+public final class Compiler {
+
+    private final Optional<Stdlib.Registry> stdlib;
+    private final CompilationListener listener;
+    private final Optional<ForkJoinPool> pool;
+
+    public Compiler() {
+        this(CompilationListener.NONE);
+    }
+
+    /**
+     * Creates a compiler that resolves types and functions in the current
+     * {@link Stdlib} at the time of each compilation.
+     */
+    public Compiler(CompilationListener listener) {
+        this.stdlib = Optional.empty();
+        this.listener = listener;
+        this.pool = Optional.empty();
+    }
+
+    public Compiler(Stdlib.Registry stdlib, CompilationListener listener) {
+        this.stdlib = Optional.of(stdlib);
+        this.listener = listener;
+        this.pool = Optional.empty();
+    }
+
+    /**
+     * Creates a compiler that analyzes the top-level statements of a source
+     * with a {@link ParallelAnalyzer} and generates their Java code with a
+     * {@link ParallelGenerator} on the given pool, for sources with many
+     * large statements.
+     */
+    public Compiler(Stdlib.Registry stdlib, CompilationListener listener, ForkJoinPool pool) {
+        this.stdlib = Optional.of(stdlib);
+        this.listener = listener;
+        this.pool = Optional.of(pool);
+    }
+
+    public String compile(String input) throws ParseException, AnalysisException {
+        return compile(input, this::generate, output -> output.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Compiles source code directly to the class file of {@code Main} with
+     * the {@link BytecodeGenerator}.
+     */
+    public byte[] compileClass(String input) throws ParseException, AnalysisException {
+        return compile(input, BytecodeGenerator::generate, bytes -> bytes.length);
+    }
+
+    private <T> T compile(String input, Function<Ast.Source, T> generator, ToIntFunction<T> size) {
+        if (listener == CompilationListener.NONE) {
+            Ast ast = Parser.parse(Lexer.lexBuffer(input));
+            return generator.apply(new Optimizer().visit((Ast.Source) analyze(ast)));
+        }
+        long[] nanos = new long[CompilationListener.Phase.values().length];
+        CompilationListener.Phase phase = begin(CompilationListener.Phase.LEX);
+        long start = System.nanoTime();
+        try {
+            TokenBuffer tokens = Lexer.lexBuffer(input);
+            start = end(phase, start, nanos);
+            phase = begin(CompilationListener.Phase.PARSE);
+            Ast ast = Parser.parse(tokens);
+            start = end(phase, start, nanos);
+            phase = begin(CompilationListener.Phase.ANALYZE);
+            Ast analyzed = analyze(ast);
+            start = end(phase, start, nanos);
+            phase = begin(CompilationListener.Phase.OPTIMIZE);
+            Ast.Source optimized = new Optimizer().visit((Ast.Source) analyzed);
+            start = end(phase, start, nanos);
+            phase = begin(CompilationListener.Phase.GENERATE);
+            T output = generator.apply(optimized);
+            end(phase, start, nanos);
+            Measure measure = new Measure();
+            measure.visit(analyzed);
+            listener.compilationCompleted(new CompilationMetrics(nanos, tokens.size(), measure.nodes,
+                    measure.maxDepth, size.applyAsInt(output)));
+            return output;
+        } catch (RuntimeException e) {
+            listener.compilationFailed(phase, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Compiles a file once. See {@link #run} for the arguments.
+     */
+    public static void main(String[] args) throws IOException {
+        Compiler compiler = new Compiler();
+        System.exit(run(args, compiler::compile, compiler::compileClass));
+    }
+
+    /**
+     * Runs a compilation from the command line with the arguments
+     * {@code [--class] input [output]}, writing the Java code, or the class
+     * file with {@code --class}, to the output file or to standard output.
+     * Returns the exit status, which is 1 if the source is invalid and 2 if
+     * the arguments are.
+     */
+    static int run(String[] args, Function<String, String> java, Function<String, byte[]> classes) throws IOException {
+        boolean bytecode = args.length > 0 && args[0].equals("--class");
+        int first = bytecode ? 1 : 0;
+        if (args.length - first < 1 || args.length - first > 2) {
+            System.err.println("Usage: [--class] input [output]");
+            return 2;
+        }
+        String input = new String(Files.readAllBytes(Paths.get(args[first])), StandardCharsets.UTF_8);
+        byte[] output;
+        try {
+            output = bytecode ? classes.apply(input) : java.apply(input).getBytes(StandardCharsets.UTF_8);
+        } catch (ParseException e) {
+            System.err.println(args[first] + ": " + e.getMessage() + " (at index " + e.getIndex() + ")");
+            return 1;
+        } catch (AnalysisException e) {
+            System.err.println(args[first] + ": " + e.getMessage());
+            return 1;
+        }
+        if (args.length - first == 2) {
+            Files.write(Paths.get(args[first + 1]), output);
+        } else {
+            System.out.write(output);
+            System.out.flush();
+        }
+        return 0;
+    }
+
+    private Ast analyze(Ast ast) {
+        Stdlib.Registry stdlib = this.stdlib.orElseGet(Stdlib::snapshot);
+        if (pool.isPresent()) {
+            return new ParallelAnalyzer(pool.get(), stdlib).analyze((Ast.Source) ast);
+        }
+        return new Analyzer(new Scope(null), stdlib).visit(ast);
+    }
+
+    private String generate(Ast.Source ast) {
+        if (pool.isPresent()) {
+            return new ParallelGenerator(pool.get()).generate(ast);
+        }
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(ast);
+        return writer.toString();
+    }
+
+    private CompilationListener.Phase begin(CompilationListener.Phase phase) {
+        listener.phaseStarted(phase);
+        return phase;
+    }
+
+    /**
+     * Records the time of a phase that started at the given time and returns
+     * the time it ended, which is when the next phase starts.
+     */
+    private long end(CompilationListener.Phase phase, long start, long[] nanos) {
+        long end = System.nanoTime();
+        nanos[phase.ordinal()] = end - start;
+        listener.phaseCompleted(phase, end - start);
+        return end;
+    }
+
+    /**
+     * Counts the nodes of an AST and the deepest nesting of blocks, which is
+     * the depth of the innermost scope created by the analyzer.
+     */
+    private static final class Measure implements Ast.Visitor<Void> {
+
+        private int nodes = 0;
+        private int depth = 0;
+        private int maxDepth = 0;
+
+        private void visit(List<? extends Ast> asts) {
+            for (Ast ast : asts) {
+                visit(ast);
+            }
+        }
+
+        private void block(List<Ast.Statement> statements) {
+            maxDepth = Math.max(maxDepth, ++depth);
+            visit(statements);
+            depth--;
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            nodes++;
+            visit(ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Expression ast) {
+            nodes++;
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Declaration ast) {
+            nodes++;
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Assignment ast) {
+            nodes++;
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.If ast) {
+            nodes++;
+            visit(ast.getCondition());
+            block(ast.getThenStatements());
+            block(ast.getElseStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.While ast) {
+            nodes++;
+            visit(ast.getCondition());
+            block(ast.getStatements());
+            return null;
+        }
+
+        /**
+         * Counts the nodes of an expression with an {@link ExpressionWalker},
+         * since expressions may be nested too deeply to count recursively.
+         */
+        private Void expression(Ast.Expression ast) {
+            new ExpressionWalker<Void>() {
+                @Override
+                void enter(Ast.Expression expression) {
+                    nodes++;
+                }
+
+                @Override
+                Void exit(Ast.Expression expression, List<Void> operands) {
+                    return null;
+                }
+            }.walk(ast);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Literal ast) {
+            nodes++;
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Group ast) {
+            return expression(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Binary ast) {
+            return expression(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Concat ast) {
+            return expression(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Variable ast) {
+            nodes++;
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Function ast) {
+            return expression(ast);
+        }
+
+    }
+
+}
@@ -0,0 +1,258 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+final class CompilerTests {
+
+    @Test
+    void testCompile() {
+        String expected = String.join(System.lineSeparator(),
+                "public final class Main {",
+                "",
+                "    public static void main(String[] args) {",
+                "        System.out.println(\"Hello World!\");",
+                "    }",
+                "",
+                "}",
+                ""
+        );
+        Assertions.assertEquals(expected, new Compiler().compile("PRINT(\"Hello \" + \"World!\");"));
+    }
+
+    @Test
+    void testListener() {
+        List<String> events = new ArrayList<>();
+        List<CompilationMetrics> metrics = new ArrayList<>();
+        CompilationListener listener = new CompilationListener() {
+
+            @Override
+            public void phaseStarted(Phase phase) {
+                events.add("start " + phase);
+            }
+
+            @Override
+            public void phaseCompleted(Phase phase, long nanos) {
+                events.add("end " + phase);
+            }
+
+            @Override
+            public void compilationCompleted(CompilationMetrics result) {
+                metrics.add(result);
+            }
+
+        };
+        String output = new Compiler(listener).compile("LET x: INTEGER = 1; WHILE x != 0 DO IF TRUE THEN x = 0; END END");
+        Assertions.assertEquals(Arrays.asList(
+                "start LEX", "end LEX",
+                "start PARSE", "end PARSE",
+                "start ANALYZE", "end ANALYZE",
+                "start OPTIMIZE", "end OPTIMIZE",
+                "start GENERATE", "end GENERATE"
+        ), events);
+        Assertions.assertEquals(1, metrics.size());
+        Assertions.assertEquals(21, metrics.get(0).getTokens());
+        Assertions.assertEquals(11, metrics.get(0).getNodes());
+        Assertions.assertEquals(2, metrics.get(0).getScopeDepth());
+        Assertions.assertEquals(output.length(), metrics.get(0).getBytes());
+    }
+
+    @Test
+    void testHistogram() {
+        HistogramListener listener = new HistogramListener();
+        Compiler compiler = new Compiler(listener);
+        compiler.compile("PRINT(1);");
+        compiler.compile("LET x: STRING = \"a\"; PRINT(x + 1);");
+        Assertions.assertThrows(AnalysisException.class, () -> compiler.compile("PRINT(y);"));
+        Assertions.assertThrows(ParseException.class, () -> compiler.compile("PRINT(1)"));
+        Assertions.assertEquals(2, listener.getTokens().getCount());
+        Assertions.assertEquals(5 + 14, listener.getTokens().getSum());
+        Assertions.assertEquals(14, listener.getTokens().getMax());
+        Assertions.assertEquals(14, listener.getTokens().getPercentile(99));
+        Assertions.assertEquals(7, listener.getTokens().getPercentile(50));
+        Assertions.assertEquals(2, listener.getNanos(CompilationListener.Phase.GENERATE).getCount());
+        Assertions.assertEquals(1, listener.getFailures(CompilationListener.Phase.ANALYZE));
+        Assertions.assertEquals(1, listener.getFailures(CompilationListener.Phase.PARSE));
+        Assertions.assertTrue(listener.toString().contains("tokens count=2 sum=19 max=14"));
+    }
+
+    @Test
+    void testBatch() {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sources.add(i % 50 == 7 ? "PRINT(undefined);" : "LET x: INTEGER = " + i + "; PRINT(x * 2 + 1);");
+        }
+        HistogramListener listener = new HistogramListener();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<BatchCompiler.Result> results = new BatchCompiler(pool, listener).compile(sources);
+            Assertions.assertEquals(sources.size(), results.size());
+            for (int i = 0; i < sources.size(); i++) {
+                BatchCompiler.Result result = results.get(i);
+                Assertions.assertEquals(String.valueOf(i), result.getName());
+                if (i % 50 == 7) {
+                    Assertions.assertTrue(result.getException().get() instanceof AnalysisException);
+                } else {
+                    Assertions.assertEquals(new Compiler().compile(sources.get(i)), result.getOutput().get());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(490, listener.getTokens().getCount());
+        Assertions.assertEquals(10, listener.getFailures(CompilationListener.Phase.ANALYZE));
+    }
+
+    @Test
+    void testBatchDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            Files.write(directory.resolve("b.txt"), "PRINT(2);".getBytes(StandardCharsets.UTF_8));
+            Files.write(directory.resolve("a.txt"), "PRINT(1);".getBytes(StandardCharsets.UTF_8));
+            Files.write(directory.resolve("c.java"), "ignored".getBytes(StandardCharsets.UTF_8));
+            List<BatchCompiler.Result> results = new BatchCompiler().compileDirectory(directory, "*.txt");
+            Assertions.assertEquals(2, results.size());
+            Assertions.assertEquals(directory.resolve("a.txt").toString(), results.get(0).getName());
+            Assertions.assertTrue(results.get(0).getOutput().get().contains("System.out.println(1);"));
+            Assertions.assertTrue(results.get(1).getOutput().get().contains("System.out.println(2);"));
+        } finally {
+            for (String name : Arrays.asList("a.txt", "b.txt", "c.java")) {
+                Files.deleteIfExists(directory.resolve(name));
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void testParallel() {
+        StringBuilder builder = new StringBuilder("LET total: DECIMAL = 0;\n");
+        for (int i = 0; i < 200; i++) {
+            builder.append("LET x").append(i).append(": INTEGER = ").append(i).append(";\n");
+            builder.append("IF x").append(i).append(" != 0 THEN LET y: DECIMAL = total / x").append(i)
+                    .append("; WHILE y == 1.5 DO PRINT(\"y \" + y); y = 2.5; END ELSE total = 1; END\n");
+        }
+        String input = builder.toString();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Compiler parallel = new Compiler(Stdlib.snapshot(), CompilationListener.NONE, pool);
+            Assertions.assertEquals(new Compiler().compile(input), parallel.compile(input));
+            Assertions.assertArrayEquals(new Compiler().compileClass(input), parallel.compileClass(input));
+            AnalysisException expected = Assertions.assertThrows(AnalysisException.class, () -> new Compiler().compile(input + "PRINT(z);"));
+            AnalysisException actual = Assertions.assertThrows(AnalysisException.class, () -> parallel.compile(input + "PRINT(z);"));
+            Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Compiles an expression nested far deeper than the call stack allows a
+     * recursive descent through every phase, including measuring it and
+     * generating the class file. Only the group around the innermost literal
+     * is optimized away.
+     */
+    @Test
+    void testDeepExpression() {
+        int depth = 100000;
+        StringBuilder input = new StringBuilder("LET x: INTEGER = 1; PRINT(");
+        StringBuilder expected = new StringBuilder("System.out.println(");
+        for (int i = 0; i < depth; i++) {
+            input.append("x + (");
+            expected.append(i == depth - 1 ? "x + " : "x + (");
+        }
+        input.append("1");
+        expected.append("1");
+        for (int i = 0; i < depth; i++) {
+            input.append(")");
+            expected.append(i == 0 ? "" : ")");
+        }
+        input.append(");");
+        expected.append(");");
+        List<CompilationMetrics> metrics = new ArrayList<>();
+        String output = new Compiler(new CompilationListener() {
+
+            @Override
+            public void compilationCompleted(CompilationMetrics result) {
+                metrics.add(result);
+            }
+
+        }).compile(input.toString());
+        Assertions.assertTrue(output.contains(expected), "missing the deep expression");
+        Assertions.assertEquals(6 + 3 * depth, metrics.get(0).getNodes());
+        //the operands of x + (x + ...) would all be on the operand stack, so
+        //the class file is generated for ((x + x) + x) ... instead, as deep
+        //as the code of a method can be
+        StringBuilder left = new StringBuilder("LET x: INTEGER = 1; PRINT(");
+        for (int i = 0; i < 10000; i++) {
+            left.append("(");
+        }
+        left.append("x");
+        for (int i = 0; i < 10000; i++) {
+            left.append(" + x)");
+        }
+        left.append(");");
+        Ast.Source analyzed = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(left.toString())));
+        Assertions.assertArrayEquals(BytecodeGenerator.generate(new Optimizer().visit(analyzed)), new Compiler().compileClass(left.toString()));
+    }
+
+    @Test
+    void testCache() {
+        CompilationCache cache = new CompilationCache(1);
+        Assertions.assertEquals(new Compiler().compile("PRINT(1);"), cache.compile("PRINT(1);"));
+        Assertions.assertEquals(new Compiler().compile("PRINT(1);"), cache.compile("PRINT(1);"));
+        Assertions.assertArrayEquals(new Compiler().compileClass("PRINT(1);"), cache.compileClass("PRINT(1);"));
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+        cache.compile("PRINT(2);");
+        cache.compile("PRINT(1);");
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(4, cache.getMisses());
+        Assertions.assertThrows(AnalysisException.class, () -> cache.compile("PRINT(undefined);"));
+        Assertions.assertThrows(AnalysisException.class, () -> cache.compile("PRINT(undefined);"));
+        Assertions.assertEquals(6, cache.getMisses());
+    }
+
+    @Test
+    void testCacheInvalidation() {
+        CompilationCache cache = new CompilationCache(16);
+        Stdlib.Registry stdlib = Stdlib.snapshot();
+        Stdlib.Registry registered = stdlib.withFunction(new Stdlib.Function("LOG", "System.err.println", Arrays.asList(Stdlib.Type.ANY), Stdlib.Type.VOID));
+        Assertions.assertNotEquals(stdlib.getFingerprint(), registered.getFingerprint());
+        Assertions.assertEquals(stdlib.getFingerprint(), Stdlib.snapshot().getFingerprint());
+        cache.compile("PRINT(1);", stdlib);
+        cache.compile("PRINT(1);", stdlib);
+        cache.compile("PRINT(1);", registered);
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testCacheDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        try {
+            CompilationCache cache = new CompilationCache(16, Optional.of(directory), CompilationListener.NONE);
+            String expected = cache.compile("PRINT(1);");
+            CompilationCache restarted = new CompilationCache(16, Optional.of(directory), CompilationListener.NONE);
+            Assertions.assertEquals(expected, restarted.compile("PRINT(1);"));
+            Assertions.assertEquals(1, restarted.getHits());
+            Assertions.assertEquals(0, restarted.getMisses());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package plc.compiler;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A listener that keeps histograms of the metrics of all compilations in
+ * memory, so they can be read or scraped at any time. It is thread safe and
+ * does not allocate per compilation.
+ */
+public final class HistogramListener implements CompilationListener {
+
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+    private final Histogram total = new Histogram();
+    private final Histogram tokens = new Histogram();
+    private final Histogram nodes = new Histogram();
+    private final Histogram scopeDepth = new Histogram();
+    private final Histogram bytes = new Histogram();
+    private final Map<Phase, Histogram> failures = new EnumMap<>(Phase.class);
+
+    public HistogramListener() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram());
+            failures.put(phase, new Histogram());
+        }
+    }
+
+    @Override
+    public void compilationCompleted(CompilationMetrics metrics) {
+        for (Phase phase : Phase.values()) {
+            phases.get(phase).record(metrics.getNanos(phase));
+        }
+        total.record(metrics.getTotalNanos());
+        tokens.record(metrics.getTokens());
+        nodes.record(metrics.getNodes());
+        scopeDepth.record(metrics.getScopeDepth());
+        bytes.record(metrics.getBytes());
+    }
+
+    @Override
+    public void compilationFailed(Phase phase, RuntimeException exception) {
+        failures.get(phase).record(1);
+    }
+
+    /**
+     * Returns the histogram of the nanoseconds spent in the given phase by
+     * successful compilations.
+     */
+    public Histogram getNanos(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public Histogram getTotalNanos() {
+        return total;
+    }
+
+    public Histogram getTokens() {
+        return tokens;
+    }
+
+    public Histogram getNodes() {
+        return nodes;
+    }
+
+    public Histogram getScopeDepth() {
+        return scopeDepth;
+    }
+
+    public Histogram getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of compilations that failed in the given phase.
+     */
+    public long getFailures(Phase phase) {
+        return failures.get(phase).getCount();
+    }
+
+    /**
+     * Returns every histogram in a line based text format, one metric per
+     * line, with the count, sum, maximum and the median, 90th and 99th
+     * percentiles of each.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            append(builder, "nanos." + phase.name().toLowerCase(), phases.get(phase));
+        }
+        append(builder, "nanos.total", total);
+        append(builder, "tokens", tokens);
+        append(builder, "nodes", nodes);
+        append(builder, "scope_depth", scopeDepth);
+        append(builder, "bytes", bytes);
+        for (Phase phase : Phase.values()) {
+            builder.append("failures.").append(phase.name().toLowerCase()).append(' ')
+                    .append(getFailures(phase)).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String name, Histogram histogram) {
+        builder.append(name)
+                .append(" count=").append(histogram.getCount())
+                .append(" sum=").append(histogram.getSum())
+                .append(" max=").append(histogram.getMax())
+                .append(" p50=").append(histogram.getPercentile(50))
+                .append(" p90=").append(histogram.getPercentile(90))
+                .append(" p99=").append(histogram.getPercentile(99))
+                .append(System.lineSeparator());
+    }
+
+    /**
+     * A histogram of non-negative values with a bucket for each power of two,
+     * so percentiles are accurate to within a factor of two.
+     */
+    public static final class Histogram {
+
+        private static final int COUNT = 64;
+        private static final int SUM = 65;
+        private static final int MAX = 66;
+
+        /**
+         * The count of each bucket followed by the total count, sum and
+         * maximum, where bucket {@code i} holds values below {@code 2^i}.
+         */
+        private final AtomicLongArray values = new AtomicLongArray(67);
+
+        void record(long value) {
+            value = Math.max(value, 0);
+            values.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            values.incrementAndGet(COUNT);
+            values.addAndGet(SUM, value);
+            values.accumulateAndGet(MAX, value, Math::max);
+        }
+
+        public long getCount() {
+            return values.get(COUNT);
+        }
+
+        public long getSum() {
+            return values.get(SUM);
+        }
+
+        public long getMax() {
+            return values.get(MAX);
+        }
+
+        /**
+         * Returns an upper bound of the given percentile, the largest value
+         * of the bucket containing it but no more than the maximum.
+         */
+        public long getPercentile(double percentile) {
+            long count = getCount();
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < COUNT; i++) {
+                seen += values.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, getMax());
+                }
+            }
+            return getMax();
+        }
+
+    }
+
+}
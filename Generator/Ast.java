@@ -318,6 +318,37 @@ public class Ast {
 
         }
 
+        /**
+         * The concatenation of the string values of its operands, in order,
+         * which replaces a chain of string {@code +} expressions. As in the
+         * chain, one of the first two operands is a string.
+         */
+        public static final class Concat extends Expression {
+
+            private final List<Expression> operands;
+
+            public Concat(List<Expression> operands) {
+                this.operands = operands;
+            }
+
+            public List<Expression> getOperands() {
+                return operands;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof Concat && operands.equals(((Concat) obj).operands);
+            }
+
+            @Override
+            public String toString() {
+                return "Concat{" +
+                        "operands=" + operands +
+                        '}';
+            }
+
+        }
+
         public static final class Variable extends Expression {
 
             private final String name;
@@ -402,6 +433,8 @@ public class Ast {
                 return visit((Expression.Group) ast);
             } else if (ast instanceof Expression.Binary) {
                 return visit((Expression.Binary) ast);
+            } else if (ast instanceof Expression.Concat) {
+                return visit((Expression.Concat) ast);
             } else if (ast instanceof Expression.Variable) {
                 return visit((Expression.Variable) ast);
             } else if (ast instanceof Expression.Function) {
@@ -429,6 +462,8 @@ public class Ast {
 
         T visit(Expression.Binary ast);
 
+        T visit(Expression.Concat ast);
+
         T visit(Expression.Variable ast);
 
         T visit(Expression.Function ast);
@@ -0,0 +1,9 @@
+package plc.compiler;
+
+public final class CompilationException extends RuntimeException {
+
+    public CompilationException(String message) {
+        super(message);
+    }
+
+}
@@ -1,6 +1,9 @@
 package plc.compiler;
 
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 
 public final class Generator implements Ast.Visitor<Void> {
 
@@ -8,7 +11,16 @@ public final class Generator implements Ast.Visitor<Void> {
     private int indent = 0;
 
     public Generator(PrintWriter writer) {
+        this(writer, 0);
+    }
+
+    /**
+     * Creates a generator writing statements at the given indentation, such
+     * as {@code 2} for the statements of {@code main}.
+     */
+    Generator(PrintWriter writer, int indent) {
         this.writer = writer;
+        this.indent = indent;
     }
 
     private void print(Object... objects) {
@@ -30,6 +42,14 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Source ast) {
+        return visit(ast, null);
+    }
+
+    /**
+     * Generates the source, writing the given code for each statement if it
+     * has already been generated, such as by the {@link ParallelGenerator}.
+     */
+    Void visit(Ast.Source ast, String[] statements) {
         print("public final class Main {");
         newline(0);
         newline(++indent);
@@ -38,7 +58,10 @@ public final class Generator implements Ast.Visitor<Void> {
         {
             newline(++indent);
             for (int i = 0; i < ast.getStatements().size(); i++) {
-                visit(ast.getStatements().get(i));
+                if (statements == null)
+                    visit(ast.getStatements().get(i));
+                else
+                    writer.write(statements[i]);
                 if (i != ast.getStatements().size() - 1)
                     newline(indent);
             }
@@ -139,18 +162,21 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expression.Group ast) {
-        print("(");
-        visit(ast.getExpression());
-        print(")");
-        return null;
+        return expression(ast);
     }
 
     @Override
     public Void visit(Ast.Expression.Binary ast) {
-        visit(ast.getLeft());
-        print(" ", ast.getOperator(), " ");
-        visit(ast.getRight());
-        return null;
+        return expression(ast);
+    }
+
+    /**
+     * Generates the operands joined by {@code +}, which javac compiles to a
+     * single concatenation rather than one per operator.
+     */
+    @Override
+    public Void visit(Ast.Expression.Concat ast) {
+        return expression(ast);
     }
 
     @Override
@@ -161,14 +187,50 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expression.Function ast) {
-        print(ast.getName(),"(");
-        for (int i = 0; i < ast.getArguments().size(); i++)
-        {
-            visit(ast.getArguments().get(i));
-            if (i != ast.getArguments().size() - 1)
-                print(", ");
+        return expression(ast);
+    }
+
+    /**
+     * Generates an expression from a stack of the expressions and strings
+     * left to print, pushed in reverse so they are popped in order, rather
+     * than by visiting its operands recursively. The nesting of expressions
+     * is then only limited by the heap.
+     */
+    private Void expression(Ast.Expression ast) {
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(ast);
+        while (!pending.isEmpty()) {
+            Object object = pending.pop();
+            if (object instanceof Ast.Expression.Group) {
+                pending.push(")");
+                pending.push(((Ast.Expression.Group) object).getExpression());
+                pending.push("(");
+            } else if (object instanceof Ast.Expression.Binary) {
+                Ast.Expression.Binary binary = (Ast.Expression.Binary) object;
+                pending.push(binary.getRight());
+                pending.push(" " + binary.getOperator() + " ");
+                pending.push(binary.getLeft());
+            } else if (object instanceof Ast.Expression.Concat) {
+                List<Ast.Expression> operands = ((Ast.Expression.Concat) object).getOperands();
+                for (int i = operands.size() - 1; i >= 0; i--) {
+                    pending.push(operands.get(i));
+                    if (i != 0)
+                        pending.push(" + ");
+                }
+            } else if (object instanceof Ast.Expression.Function) {
+                Ast.Expression.Function function = (Ast.Expression.Function) object;
+                List<Ast.Expression> arguments = function.getArguments();
+                pending.push(")");
+                for (int i = arguments.size() - 1; i >= 0; i--) {
+                    pending.push(arguments.get(i));
+                    if (i != 0)
+                        pending.push(", ");
+                }
+                pending.push(function.getName() + "(");
+            } else {
+                print(object);
+            }
         }
-        print(")");
         return null;
     }
 
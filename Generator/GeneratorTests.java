@@ -3,12 +3,15 @@ package plc.compiler;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 public class GeneratorTests {
 
@@ -511,10 +514,104 @@ public class GeneratorTests {
         test(ast, expected);
     }
 
+    @Test
+    void testConcat() {
+        Ast.Expression ast = new Ast.Expression.Concat(Arrays.asList(
+                new Ast.Expression.Variable("x"),
+                new Ast.Expression.Literal("a"),
+                new Ast.Expression.Group(new Ast.Expression.Binary("+",
+                        new Ast.Expression.Variable("y"),
+                        new Ast.Expression.Literal(BigInteger.ONE)
+                ))
+        ));
+        String expected = "x + \"a\" + (y + 1)";
+        test(ast, expected);
+    }
+
+    /**
+     * Generates an expression nested far deeper than a recursive visitor
+     * could on a default stack.
+     */
+    @Test
+    void testDeepExpression() {
+        int depth = 100000;
+        Ast.Expression ast = new Ast.Expression.Variable("x");
+        StringBuilder expected = new StringBuilder("x");
+        for (int i = 0; i < depth; i++) {
+            ast = new Ast.Expression.Function("f", Arrays.asList(new Ast.Expression.Literal(BigInteger.ONE),
+                    new Ast.Expression.Group(new Ast.Expression.Binary("*", ast, new Ast.Expression.Variable("y")))));
+        }
+        for (int i = 0; i < depth; i++) {
+            expected.insert(0, "f(1, (").append(" * y))");
+        }
+        test(ast, expected.toString());
+    }
+
+    @Test
+    void testCompile() throws Exception {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.Declaration("x", "int", Optional.of(new Ast.Expression.Literal(BigInteger.valueOf(6)))),
+                new Ast.Statement.Expression(new Ast.Expression.Function("System.out.println", Arrays.asList(
+                        new Ast.Expression.Binary("*",
+                                new Ast.Expression.Variable("x"),
+                                new Ast.Expression.Literal(BigInteger.valueOf(7))
+                        )
+                )))
+        ));
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(ast);
+        PrintStream out = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InMemoryCompiler compiler = new InMemoryCompiler()) {
+            Class<?> main = compiler.compile(writer.toString());
+            Assertions.assertNotSame(main, compiler.compile(writer.toString()));
+            System.setOut(new PrintStream(output, true));
+            main.getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        Assertions.assertEquals("42" + System.lineSeparator(), output.toString());
+    }
+
+    /**
+     * Tests that a program is loaded from its own classes even when the parent
+     * class loader sees another {@code Main}.
+     */
+    @Test
+    void testCompileShadowed() throws Exception {
+        try (InMemoryCompiler compiler = new InMemoryCompiler()) {
+            Class<?> parent = compiler.compile("public final class Main { public static String name() { return \"parent\"; } }");
+            try (InMemoryCompiler child = new InMemoryCompiler(parent.getClassLoader())) {
+                Class<?> main = child.compile("public final class Main { public static String name() { return \"child\"; } }");
+                Assertions.assertNotSame(parent, main);
+                Assertions.assertEquals("child", main.getMethod("name").invoke(null));
+            }
+        }
+    }
+
+    @Test
+    void testCompileError() {
+        try (InMemoryCompiler compiler = new InMemoryCompiler()) {
+            Assertions.assertThrows(CompilationException.class, () -> compiler.compile("public final class Main { undefined }"));
+        }
+    }
+
+    /**
+     * Tests that the AST generates the expected code, including when the
+     * statements of a source are generated by the {@link ParallelGenerator}.
+     */
     private static void test(Ast ast, String expected) {
         StringWriter writer = new StringWriter();
         new Generator(new PrintWriter(writer)).visit(ast);
         Assertions.assertEquals(expected, writer.toString());
+        if (ast instanceof Ast.Source) {
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                Assertions.assertEquals(expected, new ParallelGenerator(pool).generate((Ast.Source) ast));
+            } finally {
+                pool.shutdown();
+            }
+        }
     }
 
 
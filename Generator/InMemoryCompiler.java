@@ -0,0 +1,199 @@
+package plc.compiler;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the Java source produced by the {@link Generator} in memory and
+ * loads the result, instead of writing it to disk and running javac in a new
+ * process. The compiler and its file manager, which caches the contents of the
+ * platform classes, are reused across compilations; each compiled program is
+ * loaded by its own class loader so that programs stay isolated and can be
+ * unloaded independently.
+ *
+ * Compilations are serialized since the file manager is not thread safe.
+ */
+public final class InMemoryCompiler implements AutoCloseable {
+
+    private static final List<String> OPTIONS = Arrays.asList("-proc:none", "-g:none");
+
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager standard;
+    private final MemoryFileManager files;
+    private final ClassLoader parent;
+
+    public InMemoryCompiler() {
+        this(InMemoryCompiler.class.getClassLoader());
+    }
+
+    /**
+     * Creates a compiler whose programs are loaded as children of the given
+     * class loader, which should be able to load any classes referenced by
+     * the jvmNames of Stdlib functions.
+     */
+    public InMemoryCompiler(ClassLoader parent) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler is available; a JDK is required.");
+        }
+        this.standard = compiler.getStandardFileManager(null, null, null);
+        this.files = new MemoryFileManager(standard);
+        this.parent = parent;
+    }
+
+    /**
+     * Compiles the source of the {@code Main} class produced by the generator
+     * and returns the loaded class.
+     */
+    public Class<?> compile(String source) throws CompilationException {
+        return compile("Main", source);
+    }
+
+    public synchronized Class<?> compile(String name, String source) throws CompilationException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> output = new HashMap<>();
+        files.output = output;
+        try {
+            JavaFileObject file = new SourceFile(name, source);
+            boolean success = compiler.getTask(null, files, diagnostics, OPTIONS, null, Collections.singletonList(file)).call();
+            if (!success) {
+                StringBuilder message = new StringBuilder("Compilation of " + name + " failed:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    message.append(System.lineSeparator()).append(diagnostic.getLineNumber()).append(": ").append(diagnostic.getMessage(null));
+                }
+                throw new CompilationException(message.toString());
+            }
+        } finally {
+            files.output = null;
+        }
+        Map<String, byte[]> classes = new HashMap<>();
+        output.forEach((className, bytes) -> classes.put(className, bytes.toByteArray()));
+        try {
+            return new MemoryClassLoader(parent, classes).loadClass(name);
+        } catch (ClassNotFoundException e) {
+            throw new CompilationException("Compilation did not produce the class " + name + ".");
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            standard.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String source;
+
+        private SourceFile(String name, String source) {
+            super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bytes;
+
+        private ClassFile(String name, ByteArrayOutputStream bytes) {
+            super(URI.create("bytes:///" + name.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+
+    }
+
+    /**
+     * Reads classes through the standard file manager but keeps the classes
+     * being compiled in memory.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+        private Map<String, ByteArrayOutputStream> output;
+
+        private MemoryFileManager(JavaFileManager manager) {
+            super(manager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            output.put(className, bytes);
+            return new ClassFile(className, bytes);
+        }
+
+    }
+
+    private static final class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        private MemoryClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        /**
+         * Loads the compiled classes before asking the parent, which may well
+         * see another class with the same name, such as an earlier {@code Main}.
+         */
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!classes.containsKey(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    loaded = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
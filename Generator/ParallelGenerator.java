@@ -0,0 +1,48 @@
+package plc.compiler;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Generates the code of the top-level statements of a source concurrently on
+ * a {@link ForkJoinPool}, each into its own buffer, and then concatenates
+ * them in order, which results in the same code as the {@link Generator}.
+ */
+public final class ParallelGenerator {
+
+    /**
+     * The indentation of the statements of {@code main}.
+     */
+    private static final int INDENT = 2;
+
+    private final ForkJoinPool pool;
+
+    public ParallelGenerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public String generate(Ast.Source ast) {
+        List<Ast.Statement> statements = ast.getStatements();
+        String[] generated = new String[statements.size()];
+        pool.submit(() -> IntStream.range(0, generated.length).parallel().forEach(i -> {
+            StringWriter writer = new StringWriter();
+            PrintWriter printer = new PrintWriter(writer);
+            new Generator(printer, INDENT).visit(statements.get(i));
+            printer.flush();
+            generated[i] = writer.toString();
+        })).join();
+        StringWriter writer = new StringWriter();
+        PrintWriter printer = new PrintWriter(writer);
+        new Generator(printer).visit(ast, generated);
+        printer.flush();
+        return writer.toString();
+    }
+
+}
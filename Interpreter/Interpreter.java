@@ -0,0 +1,241 @@
+package plc.compiler;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Runs an analyzed AST directly, without generating and compiling Java. Values
+ * are represented the same way as analyzed literals (Integer, Double, Boolean
+ * and String) and operators follow the semantics of the Java code the
+ * {@link Generator} would produce for them.
+ *
+ * Variables are stored in a flat array indexed by the slots assigned by the
+ * {@link Analyzer}, so the AST must have been analyzed first.
+ */
+public final class Interpreter implements Ast.Visitor<Object> {
+
+    private final PrintWriter writer;
+    private Object[] variables = new Object[16];
+    private boolean[] decimals = new boolean[16];
+
+    public Interpreter(PrintWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public Object visit(Ast.Source ast) {
+        for (Ast.Statement statement : ast.getStatements()) {
+            visit(statement);
+        }
+        writer.flush();
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Declaration ast) {
+        int slot = slot(ast.getSlot(), ast.getName());
+        decimals[slot] = ast.getType().equals(Stdlib.Type.DECIMAL.getJvmName());
+        variables[slot] = ast.getValue().isPresent() ? convert(visit(ast.getValue().get()), decimals[slot]) : null;
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Assignment ast) {
+        int slot = slot(ast.getSlot(), ast.getName());
+        variables[slot] = convert(visit(ast.getExpression()), decimals[slot]);
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.If ast) {
+        List<Ast.Statement> statements = (Boolean) visit(ast.getCondition())
+                ? ast.getThenStatements()
+                : ast.getElseStatements();
+        for (Ast.Statement statement : statements) {
+            visit(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.While ast) {
+        while ((Boolean) visit(ast.getCondition())) {
+            for (Ast.Statement statement : ast.getStatements()) {
+                visit(statement);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Literal ast) {
+        return ast.getValue();
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Group ast) {
+        return new Expressions().walk(ast);
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Binary ast) {
+        return new Expressions().walk(ast);
+    }
+
+    /**
+     * Evaluates the operands of an expression before the expression itself,
+     * with an {@link ExpressionWalker} so that deeply nested expressions do
+     * not overflow the stack.
+     */
+    private final class Expressions extends ExpressionWalker<Object> {
+
+        @Override
+        void enter(Ast.Expression ast) {
+            if (ast instanceof Ast.Expression.Function && !((Ast.Expression.Function) ast).getFunction().isPresent()) {
+                throw new IllegalStateException("The function " + ((Ast.Expression.Function) ast).getName() + " has not been analyzed.");
+            }
+        }
+
+        @Override
+        Object exit(Ast.Expression ast, List<Object> operands) {
+            if (ast instanceof Ast.Expression.Literal) {
+                return visit((Ast.Expression.Literal) ast);
+            } else if (ast instanceof Ast.Expression.Variable) {
+                return visit((Ast.Expression.Variable) ast);
+            } else if (ast instanceof Ast.Expression.Group) {
+                return operands.get(0);
+            } else if (ast instanceof Ast.Expression.Binary) {
+                return binary((Ast.Expression.Binary) ast, operands.get(0), operands.get(1));
+            } else if (ast instanceof Ast.Expression.Concat) {
+                return concat(operands);
+            }
+            return call(((Ast.Expression.Function) ast).getFunction().get(), operands);
+        }
+
+    }
+
+    private static Object binary(Ast.Expression.Binary ast, Object left, Object right) {
+        switch (ast.getOperator()) {
+            case "==":
+                return equals(left, right);
+            case "!=":
+                return !equals(left, right);
+        }
+        if (ast.getType() == Stdlib.Type.STRING) {
+            return String.valueOf(left) + right;
+        } else if (ast.getType() == Stdlib.Type.INTEGER) {
+            int l = (Integer) left;
+            int r = (Integer) right;
+            switch (ast.getOperator()) {
+                case "+": return l + r;
+                case "-": return l - r;
+                case "*": return l * r;
+                case "/": return l / r;
+            }
+        } else if (ast.getType() == Stdlib.Type.DECIMAL) {
+            double l = ((Number) left).doubleValue();
+            double r = ((Number) right).doubleValue();
+            switch (ast.getOperator()) {
+                case "+": return l + r;
+                case "-": return l - r;
+                case "*": return l * r;
+                case "/": return l / r;
+            }
+        }
+        throw new IllegalStateException("Unsupported binary expression " + ast.getOperator() + " of type " + ast.getType() + ".");
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Concat ast) {
+        return new Expressions().walk(ast);
+    }
+
+    /**
+     * Converts every operand to a string first so that the result can be
+     * built in a buffer of its exact length.
+     */
+    private static String concat(List<Object> operands) {
+        String[] values = new String[operands.size()];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = String.valueOf(operands.get(i));
+            length += values[i].length();
+        }
+        StringBuilder builder = new StringBuilder(length);
+        for (String value : values) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Variable ast) {
+        return variables[slot(ast.getSlot(), ast.getName())];
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Function ast) {
+        return new Expressions().walk(ast);
+    }
+
+    /**
+     * Calls a function with the values of its arguments, widening those
+     * passed as a DECIMAL.
+     */
+    private Object call(Stdlib.Function function, List<Object> arguments) {
+        for (int i = 0; i < arguments.size(); i++) {
+            boolean decimal = function.getParameterTypes().get(i) == Stdlib.Type.DECIMAL;
+            arguments.set(i, convert(arguments.get(i), decimal));
+        }
+        if (function == Stdlib.Function.PRINT) {
+            writer.println(arguments.get(0));
+            return null;
+        }
+        return function.getImplementation().orElseThrow(() ->
+                new IllegalStateException("The function " + function.getName() + " has no implementation.")
+        ).invoke(arguments);
+    }
+
+    /**
+     * Returns the slot of a variable, growing the storage to fit it.
+     */
+    private int slot(int slot, String name) {
+        if (slot < 0) {
+            throw new IllegalStateException("The variable " + name + " has not been analyzed.");
+        } else if (slot >= variables.length) {
+            variables = Arrays.copyOf(variables, Math.max(slot + 1, variables.length * 2));
+            decimals = Arrays.copyOf(decimals, variables.length);
+        }
+        return slot;
+    }
+
+    /**
+     * Widens an INTEGER value that is assigned to a DECIMAL, as Java would.
+     */
+    private static Object convert(Object value, boolean decimal) {
+        return decimal && value instanceof Integer ? (Object) ((Integer) value).doubleValue() : value;
+    }
+
+    /**
+     * Compares two values the way {@code ==} compares them in Java, promoting
+     * an INTEGER compared to a DECIMAL. Strings are compared by value.
+     */
+    private static boolean equals(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            if (left instanceof Double || right instanceof Double) {
+                return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+            }
+            return ((Number) left).intValue() == ((Number) right).intValue();
+        }
+        return Objects.equals(left, right);
+    }
+
+}
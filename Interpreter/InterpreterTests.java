@@ -0,0 +1,120 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Runs source through the lexer, parser, and analyzer and checks the output
+ * of interpreting it, which should match the output of running the Java code
+ * produced by the generator.
+ */
+final class InterpreterTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) {
+        test(input, expected, Stdlib.snapshot());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Hello World",
+                        "PRINT(\"Hello World\");",
+                        lines("Hello World")
+                ),
+                Arguments.of("Arithmetic",
+                        "PRINT(1 + 2 * 3); PRINT(7 / 2); PRINT(7.0 / 2); PRINT((1 + 2) * 3 - 4);",
+                        lines("7", "3", "3.5", "5")
+                ),
+                Arguments.of("Integer Overflow",
+                        "PRINT(2147483647 + 1);",
+                        lines("-2147483648")
+                ),
+                Arguments.of("Concatenation",
+                        "PRINT(1 + 2 + \"a\" + 1.5 + TRUE);",
+                        lines("3a1.5true")
+                ),
+                Arguments.of("Concatenation Chain",
+                        "LET n: INTEGER = 1; LET s: STRING = \"x\"; PRINT(n + 2 + s + n + 1.5 + (n + 1) + \"y\" + \"z\" + TRUE);",
+                        lines("3x11.52yztrue")
+                ),
+                Arguments.of("Equality",
+                        "PRINT(1 == 1.0); PRINT(\"a\" != \"b\"); PRINT(TRUE == FALSE);",
+                        lines("true", "true", "false")
+                ),
+                Arguments.of("Decimal Variable",
+                        "LET x: DECIMAL = 1; x = x + 2; PRINT(x);",
+                        lines("3.0")
+                ),
+                Arguments.of("While",
+                        "LET n: INTEGER = 3; WHILE n != 0 DO PRINT(n); n = n - 1; END",
+                        lines("3", "2", "1")
+                ),
+                Arguments.of("If Shadowing",
+                        "LET x: STRING = \"outer\"; " +
+                        "IF TRUE THEN LET x: INTEGER = 1; PRINT(x); ELSE PRINT(x); END " +
+                        "IF FALSE THEN PRINT(x); ELSE LET y: BOOLEAN = TRUE; PRINT(y); END " +
+                        "PRINT(x);",
+                        lines("1", "true", "outer")
+                ),
+                Arguments.of("Constant Conditions",
+                        "LET x: STRING = \"outer\"; " +
+                        "IF 1 == 2 THEN PRINT(1); ELSE LET x: INTEGER = 2; PRINT(x); END " +
+                        "WHILE FALSE DO PRINT(3); END " +
+                        "IF TRUE THEN x = \"inner\"; END " +
+                        "PRINT(x);",
+                        lines("2", "inner")
+                )
+        );
+    }
+
+    @Test
+    void testImplementation() {
+        Stdlib.Registry stdlib = Stdlib.snapshot().withFunction(new Stdlib.Function("SQUARE", "square",
+                Arrays.asList(Stdlib.Type.DECIMAL), Stdlib.Type.DECIMAL,
+                arguments -> (Double) arguments.get(0) * (Double) arguments.get(0)));
+        test("PRINT(SQUARE(3));", lines("9.0"), stdlib);
+    }
+
+    /**
+     * Evaluates {@code x + (x + (... + 1))} nested far deeper than a recursive
+     * visitor could on a default stack.
+     */
+    @Test
+    void testDeepExpression() {
+        int depth = 100000;
+        StringBuilder input = new StringBuilder("LET x: INTEGER = 1; PRINT(");
+        for (int i = 0; i < depth; i++) {
+            input.append("x + (");
+        }
+        input.append("1");
+        for (int i = 0; i < depth; i++) {
+            input.append(")");
+        }
+        input.append(");");
+        test(input.toString(), lines(String.valueOf(depth + 1)), Stdlib.snapshot());
+    }
+
+    private static String lines(String... lines) {
+        return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+    }
+
+    private static void test(String input, String expected, Stdlib.Registry stdlib) {
+        Ast ast = new Analyzer(new Scope(null), stdlib).visit(Parser.parse(Lexer.lex(input)));
+        StringWriter writer = new StringWriter();
+        new Interpreter(new PrintWriter(writer)).visit(ast);
+        Assertions.assertEquals(expected, writer.toString());
+        StringWriter optimized = new StringWriter();
+        new Interpreter(new PrintWriter(optimized)).visit(new Optimizer().visit(ast));
+        Assertions.assertEquals(expected, optimized.toString(), "optimized");
+    }
+
+}
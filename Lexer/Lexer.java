@@ -1,14 +1,62 @@
 package plc.compiler;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public final class Lexer {
 
+    /**
+     * Character classes used by the lexer, stored as bit flags in
+     * {@link #CLASSES} so that classifying a character is a single array
+     * lookup instead of a regex match on a freshly allocated string.
+     */
+    static final int IDENTIFIER_START = 1;
+    static final int IDENTIFIER_PART = 2;
+    static final int DIGIT = 4;
+    static final int WHITESPACE = 8;
+    static final int STRING = 16;
+    static final int OPERATOR = 32;
+
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            int classes = 0;
+            if (c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))
+                classes |= IDENTIFIER_START | IDENTIFIER_PART;
+            if (c >= '0' && c <= '9')
+                classes |= DIGIT | IDENTIFIER_PART;
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+                classes |= WHITESPACE;
+            if (c != '"')
+                classes |= STRING;
+            if (c != '\n' && c != '\r')
+                classes |= OPERATOR;
+            CLASSES[c] = (byte) classes;
+        }
+    }
+
     final CharStream chars;
 
     Lexer(String input) {
-        chars = new CharStream(input);
+        this(CharStream.of(input));
+    }
+
+    Lexer(CharStream chars) {
+        this.chars = chars;
     }
 
     /**
@@ -19,34 +67,297 @@ public final class Lexer {
     }
 
     /**
-     * Repeatedly lexes the next token using {@link #lexToken()} until the end
-     * of the input is reached, returning the list of tokens lexed. This should
-     * also handle skipping whitespace.
+     * Lexes the characters of the stream and returns the list of tokens. See
+     * {@link CharStream#of(Reader)} and {@link CharStream#map(Path)} for
+     * lexing input that is not already in a string.
+     */
+    public static List<Token> lex(CharStream chars) throws ParseException {
+        return new Lexer(chars).lex();
+    }
+
+    /**
+     * Lexes the input lazily, producing each token only when it is requested.
+     * Any {@link ParseException} is thrown from the iterator at the point the
+     * invalid token is reached, so a consumer like the parser can start
+     * working before the whole input has been lexed.
+     */
+    public static Iterator<Token> stream(String input) {
+        return stream(CharStream.of(input));
+    }
+
+    /**
+     * Lexes the characters of the stream lazily, as in {@link #stream(String)}.
+     */
+    public static Iterator<Token> stream(CharStream chars) {
+        Lexer lexer = new Lexer(chars);
+        return new Iterator<Token>() {
+
+            private Token next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null)
+                    next = lexer.next();
+                return next != null;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Token token = next;
+                next = null;
+                return token;
+            }
+
+        };
+    }
+
+    /**
+     * Repeatedly lexes the next token using {@link #next()} until the end
+     * of the input is reached, returning the list of tokens lexed.
      */
     List<Token> lex() throws ParseException {
         List<plc.compiler.Token> list = new ArrayList<>();
-        while (chars.has(0)) {
-            if (!peek("[ \n\r\t]")) {
-                list.add(lexToken());
-                if(peek("[ \n\r\t]")) {
-                    chars.advance();
-                }
+        Token token;
+        while ((token = next()) != null) {
+            list.add(token);
+        }
+        return list;
+    }
+
+    /**
+     * Skips any whitespace and lexes the next token using {@link #lexToken()},
+     * returning {@code null} once the end of the input is reached.
+     */
+    Token next() throws ParseException {
+        while (peek(WHITESPACE)) {
+            chars.advance();
+            chars.skip(); //so the stream can discard whitespace it has read
+        }
+        if (!chars.has(0))
+            return null;
+        return lexToken();
+    }
+
+    /**
+     * The smallest number of characters worth lexing as a separate task.
+     */
+    private static final int CHUNK = 1 << 16;
+
+    /**
+     * Lexes the input in parallel on the common {@link ForkJoinPool},
+     * returning the same tokens as {@link #lex(String)} or throwing the same
+     * {@link ParseException}.
+     */
+    public static List<Token> lexParallel(String input) throws ParseException {
+        return lexParallel(input, ForkJoinPool.commonPool(), CHUNK);
+    }
+
+    /**
+     * Splits the input into chunks of at least the given size and lexes them
+     * concurrently. A chunk only starts after whitespace outside of a string,
+     * where the sequential lexer is between tokens, so every chunk lexes to
+     * the same tokens as that part of the input does sequentially. As only
+     * strings contain quotes, a position is outside of a string if an even
+     * number of quotes come before it.
+     *
+     * Each chunk is lexed in place, keeping the indices of the input, so the
+     * tokens of the chunks only need to be concatenated. If chunks fail, the
+     * exception of the first one is thrown, which is the one the sequential
+     * lexer would have reached first.
+     */
+    static List<Token> lexParallel(String input, ForkJoinPool pool, int chunk) throws ParseException {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        boolean string = false;
+        for (int i = 0, next = chunk; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '"') {
+                string = !string;
+            } else if (i >= next && !string && is(c, WHITESPACE) && i + 1 < input.length()) {
+                starts.add(i + 1);
+                next = i + 1 + chunk;
             }
-            else
+        }
+        starts.add(input.length());
+        if (starts.size() == 2) {
+            return lex(input);
+        }
+        List<List<Token>> chunks = new ArrayList<>();
+        ParseException[] exceptions = new ParseException[starts.size() - 1];
+        for (int i = 0; i < exceptions.length; i++) {
+            chunks.add(null);
+        }
+        pool.submit(() -> IntStream.range(0, exceptions.length).parallel().forEach(i -> {
+            try {
+                chunks.set(i, new Lexer(new StringCharStream(input, starts.get(i), starts.get(i + 1))).lex());
+            } catch (ParseException e) {
+                exceptions[i] = e;
+            }
+        })).join();
+        int size = 0;
+        for (int i = 0; i < exceptions.length; i++) {
+            if (exceptions[i] != null) {
+                throw exceptions[i];
+            }
+            size += chunks.get(i).size();
+        }
+        List<Token> tokens = new ArrayList<>(size);
+        for (List<Token> tokensOfChunk : chunks) {
+            tokens.addAll(tokensOfChunk);
+        }
+        return tokens;
+    }
+
+    /**
+     * Lexes the input into a compact {@link TokenBuffer}, which stores the
+     * type and position of each token without creating {@link Token} objects
+     * or copying their literals out of the input.
+     */
+    public static TokenBuffer lexBuffer(String input) throws ParseException {
+        TokenBuffer tokens = new TokenBuffer(input);
+        new Lexer(input).lex(tokens);
+        return tokens;
+    }
+
+    /**
+     * As {@link #lex()}, but appends each token to the buffer.
+     */
+    void lex(TokenBuffer tokens) throws ParseException {
+        while (true) {
+            while (peek(WHITESPACE)) {
                 chars.advance();
+                chars.skip();
+            }
+            if (!chars.has(0))
+                return;
+            int start = chars.index;
+            Token.Type type = lexType();
+            tokens.add(type, start, chars.index - start);
+            chars.skip();
         }
-        return list;
+    }
+
+    /**
+     * The number of characters after a token the lexer may look at to decide
+     * where it ends, such as the {@code .5} after an integer.
+     */
+    private static final int LOOKAHEAD = 2;
+
+    /**
+     * Lexes an edited input given the tokens of the input before the edit,
+     * only lexing the tokens around the edit. Lexing restarts after the last
+     * token the edit cannot have changed and stops at the first token after
+     * the edit which starts where an old token started, since the rest of
+     * the input is the same and lexes to the same tokens, which are only
+     * shifted by the change in length.
+     */
+    public static Relexed relex(String input, List<Token> tokens, TextEdit edit) throws ParseException {
+        int start = 0;
+        int end = tokens.size();
+        while (start < end) {
+            int middle = (start + end) >>> 1;
+            Token token = tokens.get(middle);
+            if (token.getIndex() + token.getLiteral().length() + LOOKAHEAD <= edit.getOffset()) {
+                start = middle + 1;
+            } else {
+                end = middle;
+            }
+        }
+        Lexer lexer = new Lexer(input);
+        if (start > 0) {
+            Token previous = tokens.get(start - 1);
+            lexer.chars.index = previous.getIndex() + previous.getLiteral().length();
+        }
+        int shift = edit.getShift();
+        int edited = edit.getOffset() + edit.getInserted().length();
+        List<Token> lexed = new ArrayList<>();
+        int old = start;
+        Token token;
+        while ((token = lexer.next()) != null) {
+            if (token.getIndex() >= edited) {
+                int index = token.getIndex() - shift;
+                while (old < tokens.size() && tokens.get(old).getIndex() < index) {
+                    old++;
+                }
+                if (old < tokens.size() && tokens.get(old).getIndex() == index) {
+                    break;
+                }
+            }
+            lexed.add(token);
+        }
+        if (token == null) {
+            old = tokens.size();
+        }
+        List<Token> result = new ArrayList<>(start + lexed.size() + tokens.size() - old);
+        result.addAll(tokens.subList(0, start));
+        result.addAll(lexed);
+        for (int i = old; i < tokens.size(); i++) {
+            Token shifted = tokens.get(i);
+            result.add(shift == 0 ? shifted : new Token(shifted.getType(), shifted.getLiteral(), shifted.getIndex() + shift));
+        }
+        return new Relexed(result, start, old - start, lexed.size());
+    }
+
+    /**
+     * The tokens of an edited input, which differ from the tokens before the
+     * edit only in that the {@code removed} tokens starting at {@code start}
+     * were replaced by {@code inserted} new ones and the tokens after them
+     * were shifted.
+     */
+    public static final class Relexed {
+
+        private final List<Token> tokens;
+        private final int start;
+        private final int removed;
+        private final int inserted;
+
+        Relexed(List<Token> tokens, int start, int removed, int inserted) {
+            this.tokens = tokens;
+            this.start = start;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        public List<Token> getTokens() {
+            return tokens;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
     }
 
     Token lexToken() throws ParseException {
         chars.skip();
-        if (peek("[A-Za-z_]"))
+        return chars.emit(lexType());
+    }
+
+    /**
+     * Lexes the next token, returning its type and leaving the stream
+     * positioned after it so the caller can emit it.
+     */
+    Token.Type lexType() throws ParseException {
+        if (!chars.has(0))
+            throw new plc.compiler.ParseException("Not a valid Token", chars.index);
+        char c = chars.get(0);
+        if (is(c, IDENTIFIER_START))
             return lexIdentifier();
-        else if (peek("[0-9]"))
+        else if (is(c, DIGIT))
             return lexNumber();
-        else if (peek("\""))
+        else if (c == '"')
             return lexString();
-        else if (peek("."))
+        else if (is(c, OPERATOR))
             return lexOperator();
         else
             throw new plc.compiler.ParseException("Not a valid Token", chars.index);
@@ -56,98 +367,156 @@ public final class Lexer {
      * Lexes an IDENTIFIER token. Unlike the previous project, fewer characters
      * are allowed in identifiers.
      */
-    Token lexIdentifier() throws ParseException {
-        if(match("[A-Za-z_]"))
+    Token.Type lexIdentifier() throws ParseException {
+        if(match(IDENTIFIER_START))
         {
-            while(match("[A-Za-z0-9_]"))
+            while(match(IDENTIFIER_PART))
             {
                 continue;
             }
-            return chars.emit(plc.compiler.Token.Type.IDENTIFIER);
+            return Token.Type.IDENTIFIER;
         }
         throw new plc.compiler.ParseException("Not a valid Identifier", chars.index);
     }
 
-    Token lexNumber() throws ParseException {
+    Token.Type lexNumber() throws ParseException {
         boolean isDot = false;
-        if (peek("[0-9]")) {
-            while (peek("[0-9]") || peek("\\.")) {
-                if (peek("\\.")) {
+        if (peek(DIGIT)) {
+            while (peek(DIGIT) || peek('.')) {
+                if (peek('.')) {
                     if (isDot)
-                        return chars.emit(plc.compiler.Token.Type.DECIMAL);
-                    else if(!peek("\\.","[0-9]"))
-                        return chars.emit(plc.compiler.Token.Type.INTEGER);
-                    match("\\.");
+                        return Token.Type.DECIMAL;
+                    else if(!chars.has(1) || !is(chars.get(1), DIGIT))
+                        return Token.Type.INTEGER;
+                    chars.advance();
                     isDot = true;
                 }
-                else if (match("[0-9]")) {}
+                else
+                    chars.advance();
             }
             if (isDot)
-                return chars.emit(plc.compiler.Token.Type.DECIMAL);
-            return chars.emit(plc.compiler.Token.Type.INTEGER);
+                return Token.Type.DECIMAL;
+            return Token.Type.INTEGER;
         }
         throw new plc.compiler.ParseException("Not a valid Number", chars.index);
     }
 
-    Token lexString() throws plc.compiler.ParseException {
+    Token.Type lexString() throws plc.compiler.ParseException {
         int index = chars.index;
-        if (!match("\""))
+        if (!match('"'))
             throw new ParseException("String not starting with \"", index);
-        while (!peek("[\"]")) {
-            if (match((".")) || match("[ \n\t\r]")) {}
+        while (!peek('"')) {
+            if (match(STRING)) {}
             else
                 throw new plc.compiler.ParseException("Not a valid String", index);
         }
-        if (match("\"")) {
-            return chars.emit(Token.Type.STRING);
+        if (match('"')) {
+            return Token.Type.STRING;
         }
         throw new ParseException("Not a valid String", index);
     }
 
-    Token lexOperator() throws ParseException {
-        if (match("=","=") || match("!","="))
-            return chars.emit(plc.compiler.Token.Type.OPERATOR);
-        match(".");
-        return chars.emit(plc.compiler.Token.Type.OPERATOR);
+    Token.Type lexOperator() throws ParseException {
+        if ((peek('=') || peek('!')) && chars.has(1) && chars.get(1) == '=') {
+            chars.advance();
+            chars.advance();
+            return Token.Type.OPERATOR;
+        }
+        match(OPERATOR);
+        return Token.Type.OPERATOR;
     }
 
-    boolean peek(String... patterns) {
-        for (int i = 0; i < patterns.length; i++) {
-            if (!chars.has(i) || !String.valueOf(chars.get(i)).matches(patterns[i])) {
-                return false;
-            }
-        }
-        return true;
+    /**
+     * Returns {@code true} if the character belongs to any of the given
+     * classes. ASCII characters use the precomputed table; anything else can
+     * only be part of a string or an operator, and only if it is not one of
+     * the line terminators excluded by the {@code .} regex.
+     */
+    static boolean is(char c, int classes) {
+        if (c < 128)
+            return (CLASSES[c] & classes) != 0;
+        return (classes & (STRING | OPERATOR)) != 0
+                && c != '\u0085' && c != '\u2028' && c != '\u2029';
     }
 
-    boolean match(String... patterns) {
-        boolean peek = peek(patterns);
-        if (peek) {
-            for (int i = 0; i < patterns.length; i++) {
-                chars.advance();
-            }
-        }
+    /**
+     * Returns {@code true} if the current character belongs to any of the
+     * given classes, as looked up by {@link #is} in the {@link #CLASSES}
+     * table.
+     */
+    boolean peek(int classes) {
+        return chars.has(0) && is(chars.get(0), classes);
+    }
+
+    /**
+     * Returns {@code true} if the current character is the given literal
+     * character.
+     */
+    boolean peek(char c) {
+        return chars.has(0) && chars.get(0) == c;
+    }
+
+    boolean match(int classes) {
+        boolean peek = peek(classes);
+        if (peek)
+            chars.advance();
         return peek;
     }
 
-     public static final class CharStream {
+    boolean match(char c) {
+        boolean peek = peek(c);
+        if (peek)
+            chars.advance();
+        return peek;
+    }
+
+    /**
+     * The characters being lexed. Subclasses only need to provide access to
+     * the characters around the current index and a way to slice out the
+     * literal of a token once it is emitted, which lets the input come from a
+     * string, a reader, or a file without first being copied into a string.
+     */
+    public static abstract class CharStream {
 
-        final String input;
         int index = 0;
         int length = 0;
 
-        CharStream(String input) {
-            this.input = input;
+        /**
+         * Returns a stream over a string that is already in memory.
+         */
+        public static CharStream of(String input) {
+            return new StringCharStream(input);
         }
 
-        public boolean has(int offset) {
-            return index + offset < input.length();
+        /**
+         * Returns a stream that reads from the reader as characters are
+         * needed, only keeping the characters of the current token buffered.
+         */
+        public static CharStream of(Reader reader) {
+            return new ReaderCharStream(reader);
         }
 
-        public char get(int offset) {
-            return input.charAt(index + offset);
+        /**
+         * Returns a stream over a memory-mapped ASCII file. Each byte is one
+         * character, so the file is never decoded or copied in full.
+         */
+        public static CharStream map(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return new MappedCharStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
         }
 
+        public abstract boolean has(int offset);
+
+        public abstract char get(int offset);
+
+        /**
+         * Returns the characters between the absolute indices start
+         * (inclusive) and end (exclusive), which are always those of the token
+         * currently being emitted.
+         */
+        abstract String slice(int start, int end);
+
         public void advance() {
             index++;
             length++;
@@ -160,8 +529,140 @@ public final class Lexer {
         public Token emit(Token.Type type) {
             int start = index - length;
             skip(); //we've saved the starting point already
-            return new Token(type, input.substring(start, index), start);
+            return new Token(type, slice(start, index), start);
+        }
+
+    }
+
+    static final class StringCharStream extends CharStream {
+
+        final String input;
+        private final int end;
+
+        StringCharStream(String input) {
+            this(input, 0, input.length());
+        }
+
+        /**
+         * Creates a stream over the characters of the input between start
+         * (inclusive) and end (exclusive), which keeps the indices of the
+         * whole input.
+         */
+        StringCharStream(String input, int start, int end) {
+            this.input = input;
+            this.index = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return index + offset < end;
+        }
+
+        @Override
+        public char get(int offset) {
+            return input.charAt(index + offset);
+        }
+
+        @Override
+        String slice(int start, int end) {
+            return input.substring(start, end);
+        }
+
+    }
+
+    static final class ReaderCharStream extends CharStream {
+
+        private final Reader reader;
+        char[] buffer = new char[8192];
+        private int offset = 0; //absolute index of buffer[0]
+        private int end = 0;
+        private boolean eof = false;
+
+        ReaderCharStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            int position = index + offset;
+            while (position >= this.offset + end && !eof) {
+                fill();
+            }
+            return position < this.offset + end;
+        }
+
+        @Override
+        public char get(int offset) {
+            if (!has(offset)) {
+                throw new IndexOutOfBoundsException("Index " + (index + offset) + " is past the end of the input.");
+            }
+            return buffer[index + offset - this.offset];
+        }
+
+        @Override
+        String slice(int start, int end) {
+            return new String(buffer, start - offset, end - start);
+        }
+
+        /**
+         * Reads more characters, first sliding out everything before the start
+         * of the current token and only growing the buffer if the token itself
+         * fills it.
+         */
+        private void fill() {
+            int start = index - length;
+            if (end == buffer.length) {
+                int discard = start - offset;
+                if (discard > 0) {
+                    System.arraycopy(buffer, discard, buffer, 0, end - discard);
+                    offset += discard;
+                    end -= discard;
+                } else {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            try {
+                int read = reader.read(buffer, end, buffer.length - end);
+                if (read == -1) {
+                    eof = true;
+                } else {
+                    end += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+    static final class MappedCharStream extends CharStream {
+
+        private final ByteBuffer buffer;
+
+        MappedCharStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return index + offset < buffer.limit();
+        }
+
+        @Override
+        public char get(int offset) {
+            return (char) (buffer.get(index + offset) & 0xFF);
+        }
+
+        @Override
+        String slice(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.ISO_8859_1);
         }
 
     }
+
 }
@@ -1,11 +1,20 @@
 package plc.compiler;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 /**
@@ -79,6 +88,115 @@ final class LexerTests {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testSource(String input, List<Token> expected) {
+        Assertions.assertEquals(expected, Lexer.lex(input));
+        Assertions.assertEquals(expected, Lexer.lex(Lexer.CharStream.of(new StringReader(input))));
+        Assertions.assertEquals(expected, Lexer.lexBuffer(input).asList());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("LET x: INTEGER = 1;", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "LET", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 4),
+                        new Token(Token.Type.OPERATOR, ":", 5),
+                        new Token(Token.Type.IDENTIFIER, "INTEGER", 7),
+                        new Token(Token.Type.OPERATOR, "=", 15),
+                        new Token(Token.Type.INTEGER, "1", 17),
+                        new Token(Token.Type.OPERATOR, ";", 18)
+                )),
+                Arguments.of("x==1.5!=\"a b\"", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "x", 0),
+                        new Token(Token.Type.OPERATOR, "==", 1),
+                        new Token(Token.Type.DECIMAL, "1.5", 3),
+                        new Token(Token.Type.OPERATOR, "!=", 6),
+                        new Token(Token.Type.STRING, "\"a b\"", 8)
+                )),
+                Arguments.of("1.2.3\t_a1\n", Arrays.asList(
+                        new Token(Token.Type.DECIMAL, "1.2", 0),
+                        new Token(Token.Type.OPERATOR, ".", 3),
+                        new Token(Token.Type.INTEGER, "3", 4),
+                        new Token(Token.Type.IDENTIFIER, "_a1", 6)
+                ))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testRelex(String input, TextEdit edit, int start, int removed, int inserted) {
+        TextEdit copy = new TextEdit(edit.getOffset(), edit.getRemoved(), edit.getInserted());
+        Assertions.assertEquals(edit, copy);
+        Assertions.assertEquals(edit.hashCode(), copy.hashCode());
+        String edited = edit.apply(input);
+        Lexer.Relexed relexed = Lexer.relex(edited, Lexer.lex(input), edit);
+        Assertions.assertEquals(Lexer.lex(edited), relexed.getTokens());
+        Assertions.assertEquals(Arrays.asList(start, removed, inserted),
+                Arrays.asList(relexed.getStart(), relexed.getRemoved(), relexed.getInserted()));
+    }
+
+    private static Stream<Arguments> testRelex() {
+        return Stream.of(
+                Arguments.of("x = 1; y = 2;", new TextEdit(5, 0, "2"), 2, 1, 1),
+                Arguments.of("x = 1; y = 2;", new TextEdit(3, 0, "="), 1, 1, 1),
+                Arguments.of("x = 1 .5;", new TextEdit(5, 1, ""), 2, 3, 1),
+                Arguments.of("x = 1; y = 2;", new TextEdit(0, 0, "z = 0; "), 0, 0, 4),
+                Arguments.of("x = \"a\"; y = 2;", new TextEdit(5, 0, " ; "), 2, 1, 1),
+                Arguments.of("x = 1; y = 2;", new TextEdit(6, 1, "\n\t"), 2, 2, 2),
+                Arguments.of("x = 1; y = 2;", new TextEdit(11, 2, ""), 5, 3, 1)
+        );
+    }
+
+    @Test
+    void testLexParallel() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append("LET x").append(i).append(": DECIMAL = ").append(i).append(".5 + 1 .5;\n");
+            builder.append("PRINT(\"a string\nwith lines ").append(i).append("\")==x").append(i).append(";\t\r\n");
+        }
+        String input = builder.toString();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunk : new int[] {1, 7, 100, 1 << 20}) {
+                Assertions.assertEquals(Lexer.lex(input), Lexer.lexParallel(input, pool, chunk));
+            }
+            for (String invalid : Arrays.asList(input + "\"unterminated ", input + "\u2028" + input)) {
+                ParseException expected = Assertions.assertThrows(ParseException.class, () -> Lexer.lex(invalid));
+                ParseException actual = Assertions.assertThrows(ParseException.class, () -> Lexer.lexParallel(invalid, pool, 100));
+                Assertions.assertEquals(expected.getIndex(), actual.getIndex());
+                Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testCharStream() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append("LET x").append(i).append(": DECIMAL = ").append(i).append(".5;\n");
+            builder.append("PRINT(\"a string ").append(i).append("\");\t\r\n");
+        }
+        String input = builder.toString();
+        Path file = Files.createTempFile("lexer", ".txt");
+        try {
+            Files.write(file, input.getBytes(StandardCharsets.US_ASCII));
+            Assertions.assertEquals(Lexer.lex(input), Lexer.lex(Lexer.CharStream.map(file)));
+        } finally {
+            Files.delete(file);
+        }
+        //only the current token is kept, not the whitespace before it
+        String spaced = "x" + String.join("", Collections.nCopies(100000, " ")) + "y";
+        Lexer.ReaderCharStream chars = new Lexer.ReaderCharStream(new StringReader(spaced));
+        Assertions.assertEquals(Arrays.asList(
+                new Token(Token.Type.IDENTIFIER, "x", 0),
+                new Token(Token.Type.IDENTIFIER, "y", 100001)
+        ), Lexer.lex(chars));
+        Assertions.assertEquals(8192, chars.buffer.length);
+    }
+
     /**
      * Tests that the input lexes to the (single) expected token if successful,
      * else throws a {@link ParseException} otherwise.
@@ -0,0 +1,67 @@
+package plc.compiler;
+
+import java.util.Objects;
+
+/**
+ * An edit of a source, which replaces the {@code removed} characters starting
+ * at {@code offset} with the {@code inserted} text.
+ */
+public final class TextEdit {
+
+    private final int offset;
+    private final int removed;
+    private final String inserted;
+
+    public TextEdit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0) {
+            throw new IllegalArgumentException("Invalid edit at " + offset + " removing " + removed + " characters.");
+        }
+        this.offset = offset;
+        this.removed = removed;
+        this.inserted = inserted;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public String getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Returns the change in length of a source the edit is applied to.
+     */
+    public int getShift() {
+        return inserted.length() - removed;
+    }
+
+    public String apply(String input) {
+        if (offset + removed > input.length()) {
+            throw new IndexOutOfBoundsException("Edit " + this + " is past the end of the input.");
+        }
+        return input.substring(0, offset) + inserted + input.substring(offset + removed);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TextEdit && offset == ((TextEdit) obj).offset
+                && removed == ((TextEdit) obj).removed
+                && inserted.equals(((TextEdit) obj).inserted);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(offset, removed, inserted);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + offset + ", " + (offset + removed) + ")=`" + inserted + "`";
+    }
+
+}
@@ -1,5 +1,7 @@
 package plc.compiler;
 
+import java.util.Arrays;
+
 public final class Token {
 
     public enum Type {
@@ -10,12 +12,88 @@ public final class Token {
         OPERATOR
     }
 
+    /**
+     * The keywords and operators of the grammar, so that the parser can match
+     * on (and switch over) a token's kind rather than comparing its literal.
+     * Any other token has the kind {@link #NONE}.
+     */
+    public enum Kind {
+        LET("LET"),
+        IF("IF"),
+        THEN("THEN"),
+        ELSE("ELSE"),
+        END("END"),
+        WHILE("WHILE"),
+        DO("DO"),
+        TRUE("TRUE"),
+        FALSE("FALSE"),
+        ASSIGN("="),
+        EQUAL("=="),
+        NOT_EQUAL("!="),
+        PLUS("+"),
+        MINUS("-"),
+        MULTIPLY("*"),
+        DIVIDE("/"),
+        OPEN_PAREN("("),
+        CLOSE_PAREN(")"),
+        COMMA(","),
+        COLON(":"),
+        SEMICOLON(";"),
+        NONE(null);
+
+        private static final Kind[][] BY_FIRST_CHAR = new Kind[128][0];
+
+        static {
+            for (Kind kind : values()) {
+                if (kind.literal != null) {
+                    char first = kind.literal.charAt(0);
+                    Kind[] kinds = Arrays.copyOf(BY_FIRST_CHAR[first], BY_FIRST_CHAR[first].length + 1);
+                    kinds[kinds.length - 1] = kind;
+                    BY_FIRST_CHAR[first] = kinds;
+                }
+            }
+        }
+
+        private final String literal;
+
+        Kind(String literal) {
+            this.literal = literal;
+        }
+
+        /**
+         * Returns the literal of the keyword or operator, or {@code null} for
+         * {@link #NONE}.
+         */
+        public String getLiteral() {
+            return literal;
+        }
+
+        /**
+         * Classifies the literal found at {@code input[start, start + length)}
+         * without creating a substring.
+         */
+        public static Kind of(String input, int start, int length) {
+            char first = input.charAt(start);
+            if (first < 128) {
+                for (Kind kind : BY_FIRST_CHAR[first]) {
+                    if (kind.literal.length() == length && input.regionMatches(start, kind.literal, 0, length)) {
+                        return kind;
+                    }
+                }
+            }
+            return NONE;
+        }
+
+    }
+
     private final Type type;
+    private final Kind kind;
     private final String literal;
     private final int index;
 
     public Token(Type type, String literal, int index) {
         this.type = type;
+        this.kind = literal.isEmpty() ? Kind.NONE : Kind.of(literal, 0, literal.length());
         this.literal = literal;
         this.index = index;
     }
@@ -24,6 +102,10 @@ public final class Token {
         return type;
     }
 
+    public Kind getKind() {
+        return kind;
+    }
+
     public String getLiteral() {
         return literal;
     }
@@ -0,0 +1,106 @@
+package plc.compiler;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact list of tokens stored as parallel arrays of types, start indices
+ * and lengths. Literals are only created from the original input when they
+ * are requested, so lexing a large input does not allocate a {@link Token} and
+ * a substring per token.
+ */
+public final class TokenBuffer {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    private final String input;
+    private byte[] types = new byte[64];
+    private byte[] kinds = new byte[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int size = 0;
+
+    public TokenBuffer(String input) {
+        this.input = input;
+    }
+
+    void add(Token.Type type, int start, int length) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            kinds = Arrays.copyOf(kinds, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        types[size] = (byte) type.ordinal();
+        kinds[size] = (byte) (length == 0 ? Token.Kind.NONE : Token.Kind.of(input, start, length)).ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Token.Type getType(int index) {
+        return TYPES[types[check(index)]];
+    }
+
+    public Token.Kind getKind(int index) {
+        return KINDS[kinds[check(index)]];
+    }
+
+    public String getLiteral(int index) {
+        return input.substring(starts[check(index)], starts[index] + lengths[index]);
+    }
+
+    public int getIndex(int index) {
+        return starts[check(index)];
+    }
+
+    /**
+     * Returns {@code true} if the literal of the token is equal to the given
+     * string, without creating the literal.
+     */
+    public boolean literalEquals(int index, String literal) {
+        return lengths[check(index)] == literal.length()
+                && input.regionMatches(starts[index], literal, 0, literal.length());
+    }
+
+    /**
+     * Creates the {@link Token} at the given index.
+     */
+    public Token get(int index) {
+        return new Token(getType(index), getLiteral(index), getIndex(index));
+    }
+
+    /**
+     * Returns a read-only view of the buffer as a list of tokens, each of
+     * which is created as it is accessed.
+     */
+    public List<Token> asList() {
+        return new AbstractList<Token>() {
+
+            @Override
+            public Token get(int index) {
+                return TokenBuffer.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+        };
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size + ".");
+        }
+        return index;
+    }
+
+}
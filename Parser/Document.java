@@ -0,0 +1,114 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parsed source which can be edited without lexing and parsing it again
+ * in full, such as the file open in an editor. An edit re-lexes the tokens
+ * around it with {@link Lexer#relex(String, List, TextEdit)} and re-parses
+ * only the top-level statements containing changed tokens, reusing the
+ * statements before and after them.
+ *
+ * The statements are parsed independently since a statement never looks at
+ * the tokens after it. Parsing starts at the first statement overlapping the
+ * changed tokens and stops at the first statement after them which starts
+ * where an old statement started, as all following statements are the same.
+ * The tokens after the edit are still shifted by the change in length, which
+ * is a copy rather than lexing or parsing.
+ */
+public final class Document {
+
+    private final String input;
+    private final List<Token> tokens;
+    private final Ast.Source source;
+
+    /**
+     * The index of the first token of each top-level statement, followed by
+     * the number of tokens.
+     */
+    private final int[] starts;
+
+    private Document(String input, List<Token> tokens, Ast.Source source, int[] starts) {
+        this.input = input;
+        this.tokens = tokens;
+        this.source = source;
+        this.starts = starts;
+    }
+
+    public static Document parse(String input) throws ParseException {
+        List<Token> tokens = Lexer.lex(input);
+        List<Ast.Statement> statements = new ArrayList<>();
+        int[] starts = new int[16];
+        int count = 0;
+        Parser parser = new Parser(tokens);
+        while (parser.position() < tokens.size()) {
+            starts = grow(starts, count + 1);
+            starts[count++] = parser.position();
+            statements.add(parser.parseStatement());
+        }
+        starts = grow(starts, count + 1);
+        starts[count++] = tokens.size();
+        return new Document(input, tokens, new Ast.Source(Collections.unmodifiableList(statements)), Arrays.copyOf(starts, count));
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    public Ast.Source getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the document after the edit. If the edited input is invalid,
+     * the {@link ParseException} is thrown and this document is unchanged.
+     */
+    public Document edit(TextEdit edit) throws ParseException {
+        String edited = edit.apply(input);
+        Lexer.Relexed relexed = Lexer.relex(edited, tokens, edit);
+        List<Token> tokens = relexed.getTokens();
+        if (relexed.getRemoved() == 0 && relexed.getInserted() == 0) {
+            return new Document(edited, tokens, source, starts);
+        }
+        int first = Arrays.binarySearch(starts, relexed.getStart());
+        if (first < 0) {
+            first = -first - 2;
+        }
+        int shift = relexed.getInserted() - relexed.getRemoved();
+        int reusable = relexed.getStart() + relexed.getInserted();
+        List<Ast.Statement> statements = new ArrayList<>(source.getStatements().subList(0, first));
+        int[] result = Arrays.copyOf(starts, starts.length);
+        int count = first;
+        Parser parser = new Parser(tokens.subList(starts[first], tokens.size()));
+        while (true) {
+            int position = starts[first] + parser.position();
+            //the last start is the number of tokens, so this always matches
+            //at the end of the tokens if not before
+            int match = position >= reusable ? Arrays.binarySearch(starts, position - shift) : -1;
+            if (match >= 0) {
+                statements.addAll(source.getStatements().subList(match, starts.length - 1));
+                result = grow(result, count + starts.length - match);
+                for (int i = match; i < starts.length; i++) {
+                    result[count++] = starts[i] + shift;
+                }
+                break;
+            }
+            result = grow(result, count + 1);
+            result[count++] = position;
+            statements.add(parser.parseStatement());
+        }
+        return new Document(edited, tokens, new Ast.Source(Collections.unmodifiableList(statements)), Arrays.copyOf(result, count));
+    }
+
+    private static int[] grow(int[] array, int length) {
+        return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+    }
+
+}
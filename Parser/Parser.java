@@ -3,7 +3,10 @@ package plc.compiler;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,7 +15,24 @@ public final class Parser {
     private final TokenStream tokens;
 
     public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+        this(tokens.iterator());
+    }
+
+    /**
+     * Creates a parser that pulls tokens from the iterator as they are needed,
+     * such as the one returned by {@code Lexer.stream}, instead of requiring
+     * the whole token list up front.
+     */
+    public Parser(Iterator<Token> tokens) {
+        this.tokens = new IteratorTokenStream(tokens);
+    }
+
+    /**
+     * Creates a parser over a compact {@link TokenBuffer}, which avoids
+     * creating a {@link Token} for every token that is looked at.
+     */
+    public Parser(TokenBuffer tokens) {
+        this.tokens = new BufferTokenStream(tokens);
     }
 
     /**
@@ -22,6 +42,21 @@ public final class Parser {
         return new Parser(tokens).parseSource();
     }
 
+    /**
+     * Parses the tokens as they are pulled from the iterator and returns the
+     * parsed AST.
+     */
+    public static Ast parse(Iterator<Token> tokens) throws ParseException {
+        return new Parser(tokens).parseSource();
+    }
+
+    /**
+     * Parses the tokens in the buffer and returns the parsed AST.
+     */
+    public static Ast parse(TokenBuffer tokens) throws ParseException {
+        return new Parser(tokens).parseSource();
+    }
+
     /**
      * Parses the {@code source} rule.
      */
@@ -34,6 +69,13 @@ public final class Parser {
         return new plc.compiler.Ast.Source(trees);
     }
 
+    /**
+     * Returns the number of tokens consumed so far.
+     */
+    int position() {
+        return tokens.index;
+    }
+
     /**
      * Parses the {@code statement} rule and delegates to the necessary method.
      * If the next tokens do not start a declaration, assignment, if, or while
@@ -41,16 +83,23 @@ public final class Parser {
      * clarification on what starts each type of statement.
      */
     public Ast.Statement parseStatement() throws ParseException {
-        if(match("LET"))
+        Token.Kind kind = kind(0);
+        if (kind == Token.Kind.LET) {
+            tokens.advance();
             return parseDeclarationStatement();
-        else if(match(Token.Type.IDENTIFIER, "="))
+        }
+        else if (match(Token.Type.IDENTIFIER, Token.Kind.ASSIGN))
             return parseAssignmentStatement();
-        else if(match("IF"))
-            return parseIfStatement();
-        else if(match("WHILE"))
-            return parseWhileStatement();
-        else
-            return parseExpressionStatement();
+        switch (kind) {
+            case IF:
+                tokens.advance();
+                return parseIfStatement();
+            case WHILE:
+                tokens.advance();
+                return parseWhileStatement();
+            default:
+                return parseExpressionStatement();
+        }
     }
 
     /**
@@ -60,7 +109,7 @@ public final class Parser {
      */
     public Ast.Statement.Expression parseExpressionStatement() throws ParseException {
         Ast.Expression expression = parseExpression();
-        if (match(";"))
+        if (match(Token.Kind.SEMICOLON))
             return new Ast.Statement.Expression(expression);
         throw new ParseException("Not a valid Expression Statement", 0);
     }
@@ -73,15 +122,15 @@ public final class Parser {
         String name;
         String type;
         Optional<Ast.Expression> expression = Optional.empty();
-        if (match(Token.Type.IDENTIFIER, ":", Token.Type.IDENTIFIER))
+        if (match(Token.Type.IDENTIFIER, Token.Kind.COLON, Token.Type.IDENTIFIER))
         {
-            name = tokens.get(-3).getLiteral();
-            type = tokens.get(-1).getLiteral();
-            if (match(";"))
+            name = tokens.getLiteral(-3);
+            type = tokens.getLiteral(-1);
+            if (match(Token.Kind.SEMICOLON))
                 return new Ast.Statement.Declaration(name, type , expression);
-            else if (match("=")) {
+            else if (match(Token.Kind.ASSIGN)) {
                 expression = Optional.ofNullable(parseExpression());
-                if (match(";"))
+                if (match(Token.Kind.SEMICOLON))
                     return new Ast.Statement.Declaration(name, type, expression);
                 else
                     throw new ParseException("Not a valid Declaration", 0);
@@ -99,9 +148,9 @@ public final class Parser {
     public Ast.Statement.Assignment parseAssignmentStatement() throws ParseException {
         String name;
         Ast.Expression expression;
-        name = tokens.get(-2).getLiteral();
+        name = tokens.getLiteral(-2);
         expression = parseExpression();
-        if (match(";"))
+        if (match(Token.Kind.SEMICOLON))
             return new Ast.Statement.Assignment(name, expression);
         throw new ParseException("Not a valid Assignment", 0);
     }
@@ -114,23 +163,23 @@ public final class Parser {
         Ast.Expression expression = parseExpression();
         List<Ast.Statement> then = new ArrayList();
         List<Ast.Statement> elseL = new ArrayList();
-        if (match("THEN"))
+        if (match(Token.Kind.THEN))
         {
-            if (match("END")) {
+            if (match(Token.Kind.END)) {
                 return new Ast.Statement.If(expression, then, elseL);
             }
-            while(!peek("ELSE") && !peek("END")  && tokens.has(0))
+            while(!peek(Token.Kind.ELSE) && !peek(Token.Kind.END)  && tokens.has(0))
             {
                 then.add(parseStatement());
             }
-            if (match("ELSE"))
+            if (match(Token.Kind.ELSE))
             {
-                while(!peek("END") && tokens.has(0))
+                while(!peek(Token.Kind.END) && tokens.has(0))
                 {
                     elseL.add(parseStatement());
                 }
             }
-            if (match("END"))
+            if (match(Token.Kind.END))
                 return new Ast.Statement.If(expression, then,elseL);
         }
         throw new ParseException("IF format incomplete", 0);
@@ -143,100 +192,146 @@ public final class Parser {
     public Ast.Statement.While parseWhileStatement() throws ParseException {
         Ast.Expression condition = parseExpression();
         List<Ast.Statement> statements = new ArrayList();
-        if (match("DO"))
+        if (match(Token.Kind.DO))
         {
-            if(match("END"))
+            if(match(Token.Kind.END))
                 return new Ast.Statement.While(condition, statements);
             else {
-                while(!peek("END")  && tokens.has(0))
+                while(!peek(Token.Kind.END)  && tokens.has(0))
                 {
                     statements.add(parseStatement());
                 }
             }
-            if (match("END"))
+            if (match(Token.Kind.END))
                 return new Ast.Statement.While(condition, statements);
         }
         throw new ParseException("While format incomplete", 0);
     }
 
     /**
-     * Parses the {@code expression} rule.
+     * Parses the {@code expression} rule. Rather than recursing through the
+     * rules of each precedence level for every operand, and so for every
+     * group and function call, the expression is parsed with explicit stacks
+     * (shunting-yard): each group or function call being parsed is a
+     * {@link Frame} with the operands and operators parsed so far, so the
+     * nesting of an expression is only limited by the heap. This also covers
+     * the {@code equality-expression}, {@code additive-expression},
+     * {@code multiplicative-expression} and {@code primary-expression} rules,
+     * whose precedence is given by {@link #precedence}.
      */
     public Ast.Expression parseExpression() throws ParseException {
-        return parseEqualityExpression();
-    }
-
-    /**
-     * Parses the {@code equality-expression} rule.
-     */
-    public Ast.Expression parseEqualityExpression() throws ParseException {
-        Ast.Expression left = parseAdditiveExpression();
-        Ast.Expression right = null;
-        String operator = "";
-        while (match("==") || match("!=")) {
-            operator = tokens.get(-1).getLiteral();
-            right = parseAdditiveExpression();
-            left = new Ast.Expression.Binary(operator, left, right);
+        Deque<Frame> frames = new ArrayDeque<>();
+        Frame frame = new Frame(Frame.EXPRESSION, null);
+        while (true) {
+            Ast.Expression operand;
+            if (match(Token.Type.IDENTIFIER, Token.Kind.OPEN_PAREN)) {
+                Frame function = new Frame(Frame.FUNCTION, tokens.getLiteral(-2));
+                if (tokens.has(0) && !peek(Token.Kind.CLOSE_PAREN)) {
+                    frames.push(frame);
+                    frame = function;
+                    continue;
+                } else if (!match(Token.Kind.CLOSE_PAREN)) {
+                    throw new ParseException("Not a valid Function", 0);
+                }
+                operand = new Ast.Expression.Function(function.name, function.arguments);
+            } else if (peek(Token.Kind.TRUE) || peek(Token.Kind.FALSE) || peek(Token.Type.INTEGER) || peek(Token.Type.DECIMAL) || peek(Token.Type.STRING)) {
+                operand = parseLiteral();
+            } else if (match(Token.Type.IDENTIFIER)) {
+                operand = new Ast.Expression.Variable(tokens.getLiteral(-1));
+            } else if (match(Token.Kind.OPEN_PAREN)) {
+                frames.push(frame);
+                frame = new Frame(Frame.GROUP, null);
+                continue;
+            } else {
+                throw new ParseException("Not a valid Expression", 0);
+            }
+            //adds the operand and closes any groups and function calls it
+            //ends, until an operator or another argument follows
+            while (true) {
+                frame.operands.push(operand);
+                int precedence = precedence(kind(0));
+                if (precedence > 0) {
+                    frame.reduce(precedence);
+                    frame.operators.push(kind(0));
+                    tokens.advance();
+                    break;
+                }
+                Ast.Expression expression = frame.reduce(1);
+                if (frame.kind == Frame.EXPRESSION) {
+                    return expression;
+                } else if (frame.kind == Frame.GROUP) {
+                    if (!match(Token.Kind.CLOSE_PAREN))
+                        throw new ParseException("Not a valid Group", 0);
+                    operand = new Ast.Expression.Group(expression);
+                } else {
+                    frame.arguments.add(expression);
+                    if (peek(Token.Kind.COMMA, Token.Kind.CLOSE_PAREN))
+                        throw new ParseException("Missing argument", 0);
+                    else if (match(Token.Kind.COMMA) && tokens.has(0))
+                        break;
+                    if (!match(Token.Kind.CLOSE_PAREN))
+                        throw new ParseException("Not a valid Function", 0);
+                    operand = new Ast.Expression.Function(frame.name, frame.arguments);
+                }
+                frame = frames.pop();
+            }
         }
-        return left;
     }
 
     /**
-     * Parses the {@code additive-expression} rule.
+     * Returns the precedence of a binary operator, which is higher for
+     * operators that bind more tightly, or 0 if the kind is not one.
      */
-    public Ast.Expression parseAdditiveExpression() throws ParseException {
-        Ast.Expression left = parseMultiplicativeExpression();
-        Ast.Expression right = null;
-        String operator = "";
-        while (match("+") || match("-")) {
-            operator = tokens.get(-1).getLiteral();
-            right = parseMultiplicativeExpression();
-            left = new Ast.Expression.Binary(operator, left, right);
+    private static int precedence(Token.Kind kind) {
+        switch (kind) {
+            case EQUAL: case NOT_EQUAL: return 1;
+            case PLUS: case MINUS: return 2;
+            case MULTIPLY: case DIVIDE: return 3;
+            default: return 0;
         }
-        return left;
     }
 
     /**
-     * Parses the {@code multiplicative-expression} rule.
+     * An expression being parsed by {@link #parseExpression()}: the whole
+     * expression, a group, or the current argument of a function call.
      */
-    public Ast.Expression parseMultiplicativeExpression() throws ParseException {
-        Ast.Expression left = parsePrimaryExpression();
-        Ast.Expression right = null;
-        String operator = "";
-        while (match("*") || match("/")) {
-            operator = tokens.get(-1).getLiteral();
-            right = parsePrimaryExpression();
-            left = new Ast.Expression.Binary(operator, left, right);
+    private static final class Frame {
+
+        private static final int EXPRESSION = 0;
+        private static final int GROUP = 1;
+        private static final int FUNCTION = 2;
+
+        private final int kind;
+        private final String name;
+        private final List<Ast.Expression> arguments = new ArrayList<>();
+        private final Deque<Ast.Expression> operands = new ArrayDeque<>();
+        private final Deque<Token.Kind> operators = new ArrayDeque<>();
+
+        private Frame(int kind, String name) {
+            this.kind = kind;
+            this.name = name;
         }
-        return left;
-    }
 
-    /**
-     * Parses the {@code primary-expression} rule. This is the top-level rule
-     * for expressions and includes literal values, grouping, variables, and
-     * functions. It may be helpful to break these up into other methods but is
-     * not strictly necessary.
-     */
-    public Ast.Expression parsePrimaryExpression() throws ParseException {
-        if (match(Token.Type.IDENTIFIER, "("))
-            return parseFunction();
-        else if (peek("TRUE") || peek("FALSE") || peek(Token.Type.INTEGER) || peek(Token.Type.DECIMAL) || peek(Token.Type.STRING))
-            return parseLiteral();
-        else if (match(Token.Type.IDENTIFIER))
-            return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-        else if (match("("))
-        {
-            Ast.Expression expression = parseExpression();
-            if (match(")"))
-                return new Ast.Expression.Group(expression);
-            throw new ParseException("Not a valid Group", 0);
+        /**
+         * Combines the operands of the operators with at least the given
+         * precedence, which are all on top of the stack since operators of
+         * a lower precedence are reduced before one of a higher precedence
+         * is pushed, and returns the operand on top.
+         */
+        private Ast.Expression reduce(int precedence) {
+            while (!operators.isEmpty() && Parser.precedence(operators.peek()) >= precedence) {
+                Ast.Expression right = operands.pop();
+                Ast.Expression left = operands.pop();
+                operands.push(new Ast.Expression.Binary(operators.pop().getLiteral(), left, right));
+            }
+            return operands.peek();
         }
-        throw new ParseException("Not a valid Expression", 0);
+
     }
 
     public Ast.Expression parseLiteral() throws ParseException {
-        String value = tokens.get(0).getLiteral();
-        if (match("TRUE") || match("FALSE"))
+        String value = tokens.getLiteral(0);
+        if (match(Token.Kind.TRUE) || match(Token.Kind.FALSE))
             return new Ast.Expression.Literal(Boolean.parseBoolean(value));
         else if (match(Token.Type.INTEGER)) {
             return new Ast.Expression.Literal(new BigInteger(value));
@@ -252,42 +347,32 @@ public final class Parser {
         throw new ParseException("Not a valid Literal", 0);
     }
 
-    public Ast.Expression parseFunction() throws ParseException {
-        String name = tokens.get(-2).getLiteral();
-        List<Ast.Expression> expressions = new ArrayList();
-        while (tokens.has(0) && !peek(")"))
-        {
-            expressions.add(parseExpression());
-            if (peek(",",")"))
-                throw new ParseException("Missing argument", 0);
-            else if (!match(","))
-                break;
-        }
-        if(match(")"))
-            return new Ast.Expression.Function(name, expressions);
-        throw new ParseException("Not a valid Function", 0);
-    }
-
     /**
-     * As in the lexer, returns {@code true} if the current sequence of tokens
-     * matches the given patterns. Unlike the lexer, the pattern is not a regex;
-     * instead it is either a {@link Token.Type}, which matches if the token's
-     * type is the same, or a {@link String}, which matches if the token's
-     * literal is the same.
+     * Returns {@code true} if the current sequence of tokens matches the
+     * given patterns. Each pattern is either a {@link Token.Type}, which
+     * matches if the token's type is the same, a {@link Token.Kind}, which
+     * matches if the token is that keyword or operator, or a {@link String},
+     * which matches if the token's literal is the same.
      *
      * In other words, {@code Token(IDENTIFIER, "literal")} is matched by both
-     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}.
+     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}, and
+     * {@code Token(IDENTIFIER, "LET")} is also matched by
+     * {@code peek(Token.Kind.LET)}.
      */
     private boolean peek(Object... patterns) {
         for (int i = 0; i < patterns.length; i++) {
             if (!tokens.has(i)) {
                 return false;
             } else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != tokens.get(i).getType()) {
+                if (patterns[i] != tokens.getType(i)) {
+                    return false;
+                }
+            } else if (patterns[i] instanceof Token.Kind) {
+                if (patterns[i] != tokens.getKind(i)) {
                     return false;
                 }
             } else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(tokens.get(i).getLiteral())) {
+                if (!tokens.literalEquals(i, (String) patterns[i])) {
                     return false;
                 }
             } else {
@@ -297,6 +382,14 @@ public final class Parser {
         return true;
     }
 
+    /**
+     * Returns the kind of the token at the given offset, or
+     * {@link Token.Kind#NONE} if there is no such token.
+     */
+    private Token.Kind kind(int offset) {
+        return tokens.has(offset) ? tokens.getKind(offset) : Token.Kind.NONE;
+    }
+
     /**
      * As in the lexer, returns {@code true} if {@link #peek(Object...)} is true
      * and advances the token stream.
@@ -311,27 +404,36 @@ public final class Parser {
         return peek;
     }
 
-    private static final class TokenStream {
+    private static abstract class TokenStream {
 
-        private final List<Token> tokens;
-        private int index = 0;
-
-        private TokenStream(List<Token> tokens) {
-            this.tokens = tokens;
-        }
+        protected int index = 0;
 
         /**
          * Returns true if there is a token at index + offset.
          */
-        public boolean has(int offset) {
-            return index + offset < tokens.size();
-        }
+        public abstract boolean has(int offset);
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public abstract Token.Type getType(int offset);
+
+        /**
+         * Gets the keyword or operator kind of the token at index + offset.
+         */
+        public abstract Token.Kind getKind(int offset);
+
+        /**
+         * Gets the literal of the token at index + offset.
+         */
+        public abstract String getLiteral(int offset);
 
         /**
-         * Gets the token at index + offset.
+         * Returns true if the literal of the token at index + offset is equal
+         * to the given string.
          */
-        public Token get(int offset) {
-            return tokens.get(index + offset);
+        public boolean literalEquals(int offset, String literal) {
+            return literal.equals(getLiteral(offset));
         }
 
         /**
@@ -343,4 +445,90 @@ public final class Parser {
 
     }
 
+    /**
+     * Buffers a bounded window of tokens around the current index. The parser
+     * looks at most three tokens behind (a declaration's name) and three ahead
+     * (an {@code identifier : identifier} pattern), so only {@link #CAPACITY}
+     * tokens are ever held regardless of the length of the input.
+     */
+    private static final class IteratorTokenStream extends TokenStream {
+
+        private static final int CAPACITY = 8;
+
+        private final Iterator<Token> source;
+        private final Token[] buffer = new Token[CAPACITY];
+        private int read = 0;
+
+        private IteratorTokenStream(Iterator<Token> source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            while (read <= index + offset && source.hasNext()) {
+                buffer[read++ % CAPACITY] = source.next();
+            }
+            return index + offset < read;
+        }
+
+        @Override
+        public Token.Type getType(int offset) {
+            return get(offset).getType();
+        }
+
+        @Override
+        public Token.Kind getKind(int offset) {
+            return get(offset).getKind();
+        }
+
+        @Override
+        public String getLiteral(int offset) {
+            return get(offset).getLiteral();
+        }
+
+        private Token get(int offset) {
+            int position = index + offset;
+            if (!has(offset) || position < 0 || position < read - CAPACITY) {
+                throw new IndexOutOfBoundsException("Token " + position + " is not buffered.");
+            }
+            return buffer[position % CAPACITY];
+        }
+
+    }
+
+    private static final class BufferTokenStream extends TokenStream {
+
+        private final TokenBuffer tokens;
+
+        private BufferTokenStream(TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return index + offset < tokens.size();
+        }
+
+        @Override
+        public Token.Type getType(int offset) {
+            return tokens.getType(index + offset);
+        }
+
+        @Override
+        public Token.Kind getKind(int offset) {
+            return tokens.getKind(index + offset);
+        }
+
+        @Override
+        public String getLiteral(int offset) {
+            return tokens.getLiteral(index + offset);
+        }
+
+        @Override
+        public boolean literalEquals(int offset, String literal) {
+            return tokens.literalEquals(index + offset, literal);
+        }
+
+    }
+
 }
@@ -8,6 +8,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -426,6 +427,107 @@ final class ParserTests {
         test(input, expected, Parser::parseSource);
     }
 
+    @Test
+    void testStreamingSource() {
+        /* LET x0: INTEGER = 0; ... LET x99: INTEGER = 99;
+         */
+        List<Token> input = new ArrayList<>();
+        List<Ast.Statement> statements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            input.addAll(Arrays.asList(
+                    new Token(Token.Type.IDENTIFIER, "LET", -1),
+                    new Token(Token.Type.IDENTIFIER, "x" + i, -1),
+                    new Token(Token.Type.OPERATOR, ":", -1),
+                    new Token(Token.Type.IDENTIFIER, "INTEGER", -1),
+                    new Token(Token.Type.OPERATOR, "=", -1),
+                    new Token(Token.Type.INTEGER, String.valueOf(i), -1),
+                    new Token(Token.Type.OPERATOR, ";", -1)
+            ));
+            statements.add(new Ast.Statement.Declaration("x" + i, "INTEGER",
+                    Optional.of(new Ast.Expression.Literal(BigInteger.valueOf(i)))));
+        }
+        Assertions.assertEquals(new Ast.Source(statements), new Parser(input.iterator()).parseSource());
+    }
+
+    @Test
+    void testDocument() {
+        Document document = Document.parse("LET x: INTEGER = 1; PRINT(x); x = 2; PRINT(x);");
+        List<Ast.Statement> before = document.getSource().getStatements();
+        Document edited = document.edit(new TextEdit(34, 2, "x + 1;\nWHILE x != 3 DO x = 3; END"));
+        List<Ast.Statement> after = edited.getSource().getStatements();
+        Assertions.assertEquals(Parser.parse(Lexer.lex(edited.getInput())), edited.getSource());
+        Assertions.assertEquals(5, after.size());
+        Assertions.assertSame(before.get(0), after.get(0));
+        Assertions.assertSame(before.get(1), after.get(1));
+        Assertions.assertSame(before.get(3), after.get(4));
+        Document spaced = edited.edit(new TextEdit(0, 0, "\n\n"));
+        Assertions.assertSame(edited.getSource(), spaced.getSource());
+        Assertions.assertEquals(Lexer.lex(spaced.getInput()), spaced.getTokens());
+        Assertions.assertThrows(ParseException.class, () -> spaced.edit(new TextEdit(spaced.getInput().length() - 1, 1, "")));
+    }
+
+    /**
+     * Applies random edits to a document and checks that every edit results
+     * in the same tokens and AST as lexing and parsing the edited input.
+     */
+    @Test
+    void testDocumentEdits() {
+        List<String> fragments = Arrays.asList("x", "1", ".", "5", " ", ";", "=", "==", "+", "\"", "(", ")",
+                "y = 2;", "LET z: INTEGER = 3;", "IF x == 1 THEN", "WHILE x != 1 DO", "END", "PRINT(x, 2)");
+        java.util.Random random = new java.util.Random(21);
+        Document document = Document.parse("LET x: INTEGER = 1; LET y: INTEGER = 2; IF x == 1 THEN y = 3; END PRINT(y);");
+        for (int i = 0; i < 2000; i++) {
+            String input = document.getInput();
+            int offset = random.nextInt(input.length() + 1);
+            int removed = random.nextInt(Math.min(4, input.length() - offset) + 1);
+            TextEdit edit = new TextEdit(offset, removed, fragments.get(random.nextInt(fragments.size())));
+            String edited = edit.apply(input);
+            Ast expected;
+            try {
+                expected = Parser.parse(Lexer.lex(edited));
+            } catch (ParseException e) {
+                Document current = document;
+                Assertions.assertThrows(ParseException.class, () -> current.edit(edit));
+                continue;
+            }
+            document = document.edit(edit);
+            Assertions.assertEquals(edited, document.getInput());
+            Assertions.assertEquals(Lexer.lex(edited), document.getTokens());
+            Assertions.assertEquals(expected, document.getSource(), edited);
+        }
+    }
+
+    /**
+     * Parses expressions nested far deeper than a recursive descent parser
+     * could on a default stack. The trees are checked with loops, since the
+     * recursive {@code equals} of the AST would overflow.
+     */
+    @Test
+    void testDeepExpression() {
+        int depth = 100000;
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            input.append("f(1 + (");
+        }
+        input.append("x");
+        for (int i = 0; i < depth; i++) {
+            input.append("))");
+        }
+        Ast.Expression expression = new Parser(Lexer.lex(input.toString())).parseExpression();
+        for (int i = 0; i < depth; i++) {
+            Ast.Expression.Function function = (Ast.Expression.Function) expression;
+            Assertions.assertEquals("f", function.getName());
+            Assertions.assertEquals(1, function.getArguments().size());
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) function.getArguments().get(0);
+            Assertions.assertEquals("+", binary.getOperator());
+            Assertions.assertEquals(new Ast.Expression.Literal(BigInteger.ONE), binary.getLeft());
+            expression = ((Ast.Expression.Group) binary.getRight()).getExpr();
+        }
+        Assertions.assertEquals(new Ast.Expression.Variable("x"), expression);
+        input.setLength(input.length() - 1);
+        Assertions.assertThrows(ParseException.class, () -> new Parser(Lexer.lex(input.toString())).parseExpression());
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
@@ -0,0 +1,184 @@
+package plc.compiler;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection to a {@link CompileServer}. Compilations throw the same
+ * exceptions as a local {@link Compiler}, so the client can be used in its
+ * place. It is thread safe; concurrent compilations share the connection and
+ * are handled by the server concurrently.
+ */
+public final class CompileClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+    private final Optional<Duration> timeout;
+    private volatile UncheckedIOException failure;
+
+    private CompileClient(SocketChannel channel, Optional<Duration> timeout) {
+        this.channel = channel;
+        this.timeout = timeout;
+        this.input = Protocol.input(channel);
+        this.output = Protocol.output(channel);
+        this.reader = new Thread(this::read, "plc-compile-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public static CompileClient connect(SocketAddress address) throws IOException {
+        return connect(address, Optional.empty());
+    }
+
+    /**
+     * Connects to a server, failing a compilation with an
+     * {@link UncheckedIOException} if the server has not responded to it
+     * within the timeout, if present.
+     */
+    public static CompileClient connect(SocketAddress address, Optional<Duration> timeout) throws IOException {
+        SocketChannel channel = SocketChannel.open(address instanceof UnixDomainSocketAddress
+                ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET);
+        try {
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new CompileClient(channel, timeout);
+    }
+
+    public String compile(String input) throws ParseException, AnalysisException {
+        return new String(request(Protocol.JAVA, input), StandardCharsets.UTF_8);
+    }
+
+    public byte[] compileClass(String input) throws ParseException, AnalysisException {
+        return request(Protocol.CLASS, input);
+    }
+
+    private byte[] request(byte kind, String source) {
+        int id = ids.incrementAndGet();
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        pending.put(id, response);
+        if (failure != null) {
+            pending.remove(id);
+            throw failure;
+        }
+        try {
+            synchronized (output) {
+                output.writeInt(id);
+                output.writeByte(kind);
+                Protocol.writeString(output, source);
+                output.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            throw new UncheckedIOException(e);
+        }
+        try {
+            if (timeout.isPresent()) {
+                return (byte[]) response.get(timeout.get().toNanos(), TimeUnit.NANOSECONDS);
+            }
+            return (byte[]) response.get();
+        } catch (TimeoutException e) {
+            pending.remove(id);
+            throw new UncheckedIOException(new SocketTimeoutException("The compile server did not respond within " + timeout.get() + "."));
+        } catch (InterruptedException e) {
+            pending.remove(id);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the compile server.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Reads responses and completes the requests they belong to, until the
+     * connection is closed, which fails every request still pending.
+     */
+    private void read() {
+        try {
+            while (true) {
+                int id = input.readInt();
+                byte status = input.readByte();
+                Object result;
+                if (status == Protocol.OK) {
+                    result = Protocol.readBytes(input);
+                } else if (status == Protocol.PARSE_ERROR) {
+                    int index = input.readInt();
+                    result = new ParseException(Protocol.readString(input), index);
+                } else if (status == Protocol.ANALYSIS_ERROR) {
+                    result = new AnalysisException(Protocol.readString(input));
+                } else {
+                    result = new IllegalStateException("The compile server failed: " + Protocol.readString(input));
+                }
+                CompletableFuture<Object> response = pending.remove(id);
+                if (response == null) {
+                    continue;
+                } else if (result instanceof RuntimeException) {
+                    response.completeExceptionally((RuntimeException) result);
+                } else {
+                    response.complete(result);
+                }
+            }
+        } catch (IOException e) {
+            failure = new UncheckedIOException("The connection to the compile server was closed.", e);
+            for (Integer id : pending.keySet()) {
+                CompletableFuture<Object> response = pending.remove(id);
+                if (response != null) {
+                    response.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Compiles a file with the server at the address of the {@link Protocol},
+     * taking the same arguments as {@link Compiler#main}. If no server is
+     * running the file is compiled in this process instead.
+     */
+    public static void main(String[] args) throws IOException {
+        CompileClient client;
+        try {
+            client = connect(Protocol.address());
+        } catch (IOException e) {
+            Compiler.main(args);
+            return;
+        }
+        int status;
+        try (client) {
+            status = Compiler.run(args, client::compile, client::compileClass);
+        }
+        System.exit(status);
+    }
+
+}
@@ -0,0 +1,184 @@
+package plc.compiler;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A long running compiler that serves requests from {@link CompileClient}s
+ * over a local socket, so compilations do not pay for starting a JVM and
+ * warming up the compiler each time. See {@link Protocol}.
+ *
+ * Every request is compiled as its own task on an executor, so the requests of
+ * one connection are handled concurrently. By default this is a cached pool of
+ * daemon threads; on a JVM with virtual threads, a virtual thread per task
+ * executor can be passed instead.
+ */
+public final class CompileServer implements Closeable {
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final ExecutorService executor;
+    private final Compiler compiler;
+
+    private CompileServer(ServerSocketChannel server, ExecutorService executor, Compiler compiler) throws IOException {
+        this.server = server;
+        this.address = server.getLocalAddress();
+        this.executor = executor;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Starts a server on the given address, replacing a Unix domain socket
+     * left behind by a server that was not closed.
+     */
+    public static CompileServer start(SocketAddress address) throws IOException {
+        return start(address, Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "plc-compile-server");
+            thread.setDaemon(true);
+            return thread;
+        }), new Compiler());
+    }
+
+    public static CompileServer start(SocketAddress address, ExecutorService executor, Compiler compiler) throws IOException {
+        ServerSocketChannel server;
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        CompileServer compileServer = new CompileServer(server, executor, compiler);
+        executor.execute(compileServer::accept);
+        return compileServer;
+    }
+
+    /**
+     * Returns the address the server is listening on, which includes the
+     * port chosen for a TCP address with port 0.
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                executor.execute(() -> serve(channel));
+            }
+        } catch (ClosedChannelException e) {
+            //the server was closed
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            DataInputStream input = Protocol.input(channel);
+            DataOutputStream output = Protocol.output(channel);
+            while (true) {
+                int id;
+                try {
+                    id = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte kind = input.readByte();
+                String source = Protocol.readString(input);
+                executor.execute(() -> respond(output, id, kind, source));
+            }
+        } catch (IOException | RejectedExecutionException e) {
+            //the connection or the server is closed, and responses still
+            //pending are lost
+        }
+    }
+
+    private void respond(DataOutputStream output, int id, byte kind, String source) {
+        byte status;
+        byte[] payload = null;
+        int index = 0;
+        String message = null;
+        try {
+            payload = kind == Protocol.CLASS ? compiler.compileClass(source) : compiler.compile(source).getBytes(StandardCharsets.UTF_8);
+            status = Protocol.OK;
+        } catch (ParseException e) {
+            status = Protocol.PARSE_ERROR;
+            index = e.getIndex();
+            message = e.getMessage();
+        } catch (AnalysisException e) {
+            status = Protocol.ANALYSIS_ERROR;
+            message = e.getMessage();
+        } catch (RuntimeException | Error e) {
+            //an error such as a StackOverflowError is only fatal to this
+            //compilation, and the client waits until it gets a response
+            status = Protocol.SERVER_ERROR;
+            message = String.valueOf(e);
+        }
+        synchronized (output) {
+            try {
+                output.writeInt(id);
+                output.writeByte(status);
+                if (status == Protocol.OK) {
+                    Protocol.writeBytes(output, payload);
+                } else {
+                    if (status == Protocol.PARSE_ERROR) {
+                        output.writeInt(index);
+                    }
+                    Protocol.writeString(output, message);
+                }
+                output.flush();
+            } catch (IOException e) {
+                //the client is gone
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and shuts down the executor. Requests
+     * already received are still answered if their connection is open.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        executor.shutdown();
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    /**
+     * Runs a server on the address given as the argument, or the default
+     * address of the {@link Protocol}, until the process is stopped.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SocketAddress address = args.length > 0 ? Protocol.address(args[0]) : Protocol.address();
+        CompileServer server = start(address);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                //exiting anyway
+            }
+        }));
+        System.err.println("Listening on " + server.getAddress());
+        Thread.currentThread().join();
+    }
+
+}
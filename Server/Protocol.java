@@ -0,0 +1,138 @@
+package plc.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * The protocol between the {@link CompileServer} and {@link CompileClient}.
+ * Every message is framed, so a connection can carry any number of requests,
+ * and tagged with the id of its request, so the requests of a connection can
+ * be handled concurrently and answered in any order.
+ *
+ * A request is the id, the kind of output, and the source. A response is the
+ * id, a status, and then the output if the status is {@link #OK}, the index
+ * and message of the exception if it is {@link #PARSE_ERROR}, or only the
+ * message otherwise. Sources, outputs and messages are written as their
+ * length followed by their bytes, with strings encoded in UTF-8.
+ */
+final class Protocol {
+
+    static final byte JAVA = 0;
+    static final byte CLASS = 1;
+
+    static final byte OK = 0;
+    static final byte PARSE_ERROR = 1;
+    static final byte ANALYSIS_ERROR = 2;
+    static final byte SERVER_ERROR = 3;
+
+    /**
+     * The largest source or output accepted, which protects either side
+     * from allocating an arbitrary amount of memory for a corrupt length.
+     */
+    static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * The address the server listens on and the client connects to unless
+     * the system property {@code plc.compiler.server} is set.
+     */
+    static final String DEFAULT_ADDRESS = "unix:" + Paths.get(System.getProperty("java.io.tmpdir"), "plc-compiler.sock");
+
+    private Protocol() {}
+
+    /**
+     * Parses an address of the form {@code unix:path} for a Unix domain
+     * socket or {@code host:port} for a TCP socket.
+     */
+    static SocketAddress address(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected unix:path or host:port, received " + address + ".");
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    static SocketAddress address() {
+        return address(System.getProperty("plc.compiler.server", DEFAULT_ADDRESS));
+    }
+
+    /**
+     * Returns a stream reading from the channel. Unlike the streams of
+     * {@link java.nio.channels.Channels}, it does not hold a lock shared with
+     * writing while it waits for input, so a connection can be read and
+     * written from different threads at the same time.
+     */
+    static DataInputStream input(SocketChannel channel) {
+        return new DataInputStream(new BufferedInputStream(new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                byte[] buffer = new byte[1];
+                return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return channel.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+
+        }));
+    }
+
+    static DataOutputStream output(SocketChannel channel) {
+        return new DataOutputStream(new BufferedOutputStream(new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+        }));
+    }
+
+    static byte[] readBytes(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid length " + length + ".");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+    }
+
+    static void writeString(DataOutputStream output, String string) throws IOException {
+        writeBytes(output, string.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
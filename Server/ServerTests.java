@@ -0,0 +1,122 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class ServerTests {
+
+    @Test
+    void testUnixSocket() throws Exception {
+        Path directory = Files.createTempDirectory("server");
+        try {
+            test(UnixDomainSocketAddress.of(directory.resolve("compiler.sock")));
+            Assertions.assertFalse(Files.exists(directory.resolve("compiler.sock")));
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void testTcpSocket() throws Exception {
+        test(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @Test
+    void testConcurrentRequests() throws Exception {
+        try (CompileServer server = CompileServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             CompileClient client = CompileClient.connect(server.getAddress())) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    String source = "PRINT(" + i + " * 2);";
+                    results.add(executor.submit(() -> client.compile(source)));
+                }
+                for (int i = 0; i < 200; i++) {
+                    Assertions.assertEquals(new Compiler().compile("PRINT(" + i + " * 2);"), results.get(i).get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testClosedConnection() throws Exception {
+        try (CompileServer server = CompileServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            CompileClient client = CompileClient.connect(server.getAddress());
+            Assertions.assertEquals(new Compiler().compile("PRINT(1);"), client.compile("PRINT(1);"));
+            client.close();
+            Assertions.assertThrows(UncheckedIOException.class, () -> client.compile("PRINT(1);"));
+        }
+    }
+
+    @Test
+    void testServerError() throws Exception {
+        AtomicInteger compilations = new AtomicInteger();
+        CountDownLatch blocked = new CountDownLatch(1);
+        Compiler compiler = new Compiler(new CompilationListener() {
+
+            @Override
+            public void phaseStarted(Phase phase) {
+                if (phase != Phase.LEX) {
+                    return;
+                } else if (compilations.getAndIncrement() == 0) {
+                    throw new StackOverflowError();
+                }
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        });
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (CompileServer server = CompileServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), executor, compiler);
+             CompileClient client = CompileClient.connect(server.getAddress(), Optional.of(Duration.ofSeconds(10)))) {
+            IllegalStateException error = Assertions.assertThrows(IllegalStateException.class, () -> client.compile("PRINT(1);"));
+            Assertions.assertTrue(error.getMessage().contains("StackOverflowError"), error.getMessage());
+            try (CompileClient waiting = CompileClient.connect(server.getAddress(), Optional.of(Duration.ofMillis(100)))) {
+                Assertions.assertThrows(UncheckedIOException.class, () -> waiting.compile("PRINT(1);"));
+            }
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    private static void test(SocketAddress address) throws IOException {
+        try (CompileServer server = CompileServer.start(address);
+             CompileClient client = CompileClient.connect(server.getAddress())) {
+            String source = "LET x: STRING = \"a\"; PRINT(x + 1 + 2);";
+            Assertions.assertEquals(new Compiler().compile(source), client.compile(source));
+            Assertions.assertArrayEquals(new Compiler().compileClass(source), client.compileClass(source));
+            ParseException parse = Assertions.assertThrows(ParseException.class, () -> client.compile("LET x = 1;"));
+            ParseException expected = Assertions.assertThrows(ParseException.class, () -> new Compiler().compile("LET x = 1;"));
+            Assertions.assertEquals(expected.getMessage(), parse.getMessage());
+            Assertions.assertEquals(expected.getIndex(), parse.getIndex());
+            AnalysisException analysis = Assertions.assertThrows(AnalysisException.class, () -> client.compile("PRINT(y);"));
+            Assertions.assertEquals("The identifier y is not defined.", analysis.getMessage());
+            Assertions.assertEquals(new Compiler().compile("PRINT(2);"), client.compile("PRINT(2);"));
+        }
+    }
+
+}